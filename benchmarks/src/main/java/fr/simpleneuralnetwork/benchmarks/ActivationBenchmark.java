@@ -0,0 +1,72 @@
+package fr.simpleneuralnetwork.benchmarks;
+
+import fr.simpleneuralnetwork.model.IActivation;
+import fr.simpleneuralnetwork.model.Layer;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every activation function applied to, and chained with the gradients of, a batch of linear inputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ActivationBenchmark {
+
+    @Param({"sigmoid", "relu", "silu", "softmax"})
+    public String activation;
+
+    @Param({"10", "512"})
+    public int neurons;
+
+    @Param({"32", "256"})
+    public int batchSize;
+
+    @Param({"DOUBLE", "FLOAT"})
+    public Precision precision;
+
+    @Param({"true", "false"})
+    public boolean vectorized;
+
+    private IActivation activationFunction;
+    private Tensor linearInputs;
+    private Tensor outputs;
+    private Tensor gradients;
+    private Tensor chained;
+
+    @Setup
+    public void Setup() {
+        SyntheticData.SetVectorized(vectorized);
+        Random rand = new Random(SyntheticData.SEED);
+
+        // The layer resolves the name the same way the networks do.
+        activationFunction = new Layer(1, 1, activation).getActivationFunction();
+        linearInputs = SyntheticData.RandomTensor(rand, batchSize, neurons, precision, -6, 6);
+        gradients = SyntheticData.RandomTensor(rand, batchSize, neurons, precision, -1, 1);
+        outputs = activationFunction.ApplyMatrix(linearInputs);
+        chained = new Tensor(batchSize, neurons, precision);
+    }
+
+    @Benchmark
+    public Tensor ApplyInto() {
+        activationFunction.ApplyInto(linearInputs, outputs);
+        return outputs;
+    }
+
+    /**
+     * Multiplies a fresh copy of the gradients by the derivatives, as the backward pass does in place.
+     */
+    @Benchmark
+    public Tensor ChainDerivative() {
+        chained.CopyRowsFrom(gradients, 0);
+        activationFunction.ChainDerivative(linearInputs, outputs, chained);
+        return chained;
+    }
+}
@@ -0,0 +1,88 @@
+package fr.simpleneuralnetwork.benchmarks;
+
+import fr.simpleneuralnetwork.data.Batch;
+import fr.simpleneuralnetwork.data.ByteDataset;
+import fr.simpleneuralnetwork.data.IDataset;
+import fr.simpleneuralnetwork.data.TensorDataset;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a shuffled mini-batch of MNIST-sized images, from images normalized up front into a tensor
+ * or from bytes normalized while the batch is filled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class BatchGatherBenchmark {
+
+    @Param({"60000"})
+    public int samplesNumber;
+
+    @Param({"784"})
+    public int featuresNumber;
+
+    @Param({"64"})
+    public int batchSize;
+
+    @Param({"bytes", "tensor"})
+    public String storage;
+
+    @Param({"DOUBLE", "FLOAT"})
+    public Precision precision;
+
+    private IDataset dataset;
+    private Batch batch;
+    private int[] indices;
+    private int position;
+
+    @Setup
+    public void Setup() {
+        Random rand = new Random(SyntheticData.SEED);
+        byte[] images = new byte[samplesNumber * featuresNumber];
+        byte[] labels = new byte[samplesNumber];
+        rand.nextBytes(images);
+        for (int i = 0; i < samplesNumber; i++) {
+            labels[i] = (byte) rand.nextInt(10);
+        }
+
+        ByteDataset bytes = new ByteDataset(images, labels, featuresNumber);
+        if (storage.equals("bytes")) {
+            dataset = bytes;
+        } else {
+            Tensor inputs = new Tensor(samplesNumber, featuresNumber, precision);
+            Tensor expectedOutputs = new Tensor(samplesNumber, bytes.getExpectedOutputsNumber(), precision);
+            bytes.FillBatch(0, inputs, expectedOutputs);
+            dataset = new TensorDataset(inputs, expectedOutputs);
+        }
+
+        batch = new Batch(batchSize, featuresNumber, dataset.getExpectedOutputsNumber(), precision);
+        indices = new int[samplesNumber];
+        for (int i = 0; i < samplesNumber; i++) {
+            indices[i] = i;
+        }
+        for (int i = samplesNumber - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int index = indices[i];
+            indices[i] = indices[j];
+            indices[j] = index;
+        }
+    }
+
+    @Benchmark
+    public Batch Gather() {
+        if (position + batchSize > samplesNumber) {
+            position = 0;
+        }
+        batch.Load(dataset, indices, position, batchSize);
+        position += batchSize;
+        return batch;
+    }
+}
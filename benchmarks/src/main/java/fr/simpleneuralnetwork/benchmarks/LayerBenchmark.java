@@ -0,0 +1,95 @@
+package fr.simpleneuralnetwork.benchmarks;
+
+import fr.simpleneuralnetwork.model.IOptimizer;
+import fr.simpleneuralnetwork.model.Layer;
+import fr.simpleneuralnetwork.model.LayerWorkspace;
+import fr.simpleneuralnetwork.model.NeuralNetwork;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forward pass, backward pass and weight update of a single hidden layer, followed by a 10 neuron layer
+ * which provides the gradients coming back from the next layer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class LayerBenchmark {
+
+    private static final int NEXT_NEURONS = 10;
+
+    @Param({"784"})
+    public int features;
+
+    @Param({"128", "512"})
+    public int neurons;
+
+    @Param({"32", "256"})
+    public int batchSize;
+
+    @Param({"relu", "sigmoid"})
+    public String activation;
+
+    @Param({"DOUBLE", "FLOAT"})
+    public Precision precision;
+
+    @Param({"true", "false"})
+    public boolean vectorized;
+
+    @Param({"sgd", "adam"})
+    public String optimizer;
+
+    private IOptimizer layerOptimizer;
+    private long step;
+    private Layer layer;
+    private Layer nextLayer;
+    private LayerWorkspace workspace;
+    private Tensor inputs;
+    private Tensor nextGradients;
+
+    @Setup
+    public void Setup() {
+        SyntheticData.SetVectorized(vectorized);
+        Random rand = new Random(SyntheticData.SEED);
+
+        // The network resolves the name the same way it does for training.
+        NeuralNetwork network = new NeuralNetwork(new int[]{1, 1}, "cross_entropy", "sigmoid", "sigmoid");
+        network.ScanOptimizer(optimizer);
+        layerOptimizer = network.getOptimizer();
+
+        layer = new Layer(features, neurons, activation, precision);
+        nextLayer = new Layer(neurons, NEXT_NEURONS, "softmax", precision);
+        workspace = new LayerWorkspace(batchSize, features, neurons, precision);
+        inputs = SyntheticData.RandomTensor(rand, batchSize, features, precision, 0, 1);
+        nextGradients = SyntheticData.RandomTensor(rand, batchSize, NEXT_NEURONS, precision, -1, 1);
+
+        // The backward pass needs the activations of a forward pass.
+        layer.ForwardPropagationBatch(inputs, workspace);
+    }
+
+    @Benchmark
+    public Tensor ForwardPropagationBatch() {
+        return layer.ForwardPropagationBatch(inputs, workspace);
+    }
+
+    @Benchmark
+    public Tensor BackPropagationBatch() {
+        return layer.BackPropagationBatch(nextLayer, nextGradients, workspace);
+    }
+
+    /**
+     * The update also zeroes the accumulated gradients, so the weights stay bounded across invocations.
+     */
+    @Benchmark
+    public Tensor UpdateWeights() {
+        layer.UpdateWeights(layerOptimizer, 0.01, batchSize, ++step, workspace);
+        return layer.getWeights();
+    }
+}
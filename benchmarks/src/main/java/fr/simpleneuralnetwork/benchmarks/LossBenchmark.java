@@ -0,0 +1,77 @@
+package fr.simpleneuralnetwork.benchmarks;
+
+import fr.simpleneuralnetwork.model.ILoss;
+import fr.simpleneuralnetwork.model.NeuralNetwork;
+import fr.simpleneuralnetwork.utils.MathsUtilities;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every loss function and its derivative over a batch of softmax-like outputs, against one-hot expected outputs
+ * or the class labels they encode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class LossBenchmark {
+
+    @Param({"cross_entropy", "mean_squared_error"})
+    public String loss;
+
+    @Param({"10", "512"})
+    public int outputsNumber;
+
+    @Param({"32", "256"})
+    public int batchSize;
+
+    @Param({"DOUBLE", "FLOAT"})
+    public Precision precision;
+
+    @Param({"true", "false"})
+    public boolean vectorized;
+
+    private ILoss lossFunction;
+    private Tensor outputs;
+    private Tensor expectedOutputs;
+    private int[] labels;
+    private Tensor gradients;
+
+    @Setup
+    public void Setup() {
+        SyntheticData.SetVectorized(vectorized);
+        Random rand = new Random(SyntheticData.SEED);
+
+        // The network resolves the name the same way it does for training.
+        lossFunction = new NeuralNetwork(new int[]{1, 1}, loss, "sigmoid", "sigmoid").getLossFunction();
+        outputs = SyntheticData.RandomProbabilities(rand, batchSize, outputsNumber, precision);
+        expectedOutputs = SyntheticData.RandomOneHot(rand, batchSize, outputsNumber, precision);
+        gradients = new Tensor(batchSize, outputsNumber, precision);
+        labels = new int[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            labels[i] = MathsUtilities.IndexMaxOfRow(expectedOutputs, i);
+        }
+    }
+
+    @Benchmark
+    public double GlobalLoss() {
+        return lossFunction.GlobalLoss(outputs, expectedOutputs);
+    }
+
+    @Benchmark
+    public Tensor DerivativeInto() {
+        lossFunction.DerivativeInto(outputs, expectedOutputs, gradients);
+        return gradients;
+    }
+
+    @Benchmark
+    public double GlobalLossFromLabels() {
+        return lossFunction.GlobalLoss(outputs, labels);
+    }
+}
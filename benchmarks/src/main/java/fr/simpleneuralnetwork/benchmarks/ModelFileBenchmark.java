@@ -0,0 +1,65 @@
+package fr.simpleneuralnetwork.benchmarks;
+
+import fr.simpleneuralnetwork.model.NeuralNetwork;
+import fr.simpleneuralnetwork.utils.Precision;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading a model in the binary and in the legacy text format, through a temporary file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ModelFileBenchmark {
+
+    @Param({"784,128,10", "784,512,256,10"})
+    public String layerSizes;
+
+    @Param({"binary", "text"})
+    public String format;
+
+    @Param({"DOUBLE", "FLOAT"})
+    public Precision precision;
+
+    private NeuralNetwork network;
+    private Path file;
+
+    @Setup
+    public void Setup() throws IOException {
+        network = new NeuralNetwork(SyntheticData.ParseLayerSizes(layerSizes), "cross_entropy", "relu", "softmax",
+                precision);
+        file = Files.createTempFile("simpleneuralnetwork-benchmark", ".model");
+        Write();
+    }
+
+    @TearDown
+    public void TearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void Save() {
+        Write();
+    }
+
+    @Benchmark
+    public NeuralNetwork Load() {
+        return NeuralNetwork.LoadFromFile(file.toString());
+    }
+
+    private void Write() {
+        if (format.equals("text")) {
+            network.WriteInTextFile(file.toString());
+        } else {
+            network.WriteInFile(file.toString());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package fr.simpleneuralnetwork.benchmarks;
+
+import fr.simpleneuralnetwork.model.NeuralNetwork;
+import fr.simpleneuralnetwork.utils.Precision;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched inference over a synthetic test set, as used to compute the test accuracy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class PredictionBenchmark {
+
+    @Param({"784,128,10", "784,512,256,10"})
+    public String layerSizes;
+
+    @Param({"1000"})
+    public int samplesNumber;
+
+    @Param({"1", "256"})
+    public int predictionBatchSize;
+
+    @Param({"DOUBLE", "FLOAT"})
+    public Precision precision;
+
+    @Param({"true", "false"})
+    public boolean vectorized;
+
+    private NeuralNetwork network;
+    private double[][] inputs;
+
+    @Setup
+    public void Setup() {
+        SyntheticData.SetVectorized(vectorized);
+        int[] sizes = SyntheticData.ParseLayerSizes(layerSizes);
+
+        network = new NeuralNetwork(sizes, "cross_entropy", "relu", "softmax", precision);
+        network.setPredictionBatchSize(predictionBatchSize);
+        inputs = SyntheticData.RandomArray(new Random(SyntheticData.SEED), samplesNumber, sizes[0]);
+    }
+
+    @Benchmark
+    public double[][] PredictAll() {
+        return network.PredictAll(inputs);
+    }
+}
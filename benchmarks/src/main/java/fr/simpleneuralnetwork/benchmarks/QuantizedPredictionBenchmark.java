@@ -0,0 +1,51 @@
+package fr.simpleneuralnetwork.benchmarks;
+
+import fr.simpleneuralnetwork.model.NeuralNetwork;
+import fr.simpleneuralnetwork.model.QuantizedModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inference with 8-bit quantized weights, to compare with {@link PredictionBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class QuantizedPredictionBenchmark {
+
+    @Param({"784,128,10", "784,512,256,10"})
+    public String layerSizes;
+
+    @Param({"1000"})
+    public int samplesNumber;
+
+    @Param({"true", "false"})
+    public boolean vectorized;
+
+    private QuantizedModel model;
+    private double[][] inputs;
+
+    @Setup
+    public void Setup() {
+        SyntheticData.SetVectorized(vectorized);
+        int[] sizes = SyntheticData.ParseLayerSizes(layerSizes);
+
+        model = new NeuralNetwork(sizes, "cross_entropy", "relu", "softmax").ToQuantizedModel();
+        inputs = SyntheticData.RandomArray(new Random(SyntheticData.SEED), samplesNumber, sizes[0]);
+    }
+
+    @Benchmark
+    public double[][] PredictAll() {
+        return model.PredictAll(inputs);
+    }
+
+    @Benchmark
+    public double[] Predict() {
+        return model.Predict(inputs[0]);
+    }
+}
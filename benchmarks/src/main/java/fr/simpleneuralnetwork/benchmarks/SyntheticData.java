@@ -0,0 +1,76 @@
+package fr.simpleneuralnetwork.benchmarks;
+
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.Vectorization;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Seeded random inputs for the benchmarks, so that every run measures the same data.
+ */
+final class SyntheticData {
+
+    static final long SEED = 42;
+
+    private SyntheticData() {
+    }
+
+    static Tensor RandomTensor(Random rand, int rows, int cols, Precision precision, double min, double max) {
+        Tensor tensor = new Tensor(rows, cols, precision);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                tensor.set(i, j, min + (max - min) * rand.nextDouble());
+            }
+        }
+        return tensor;
+    }
+
+    /**
+     * Returns rows of probabilities summing to 1, like the outputs of a softmax layer.
+     */
+    static Tensor RandomProbabilities(Random rand, int rows, int cols, Precision precision) {
+        Tensor tensor = RandomTensor(rand, rows, cols, precision, 0.01, 1);
+        for (int i = 0; i < rows; i++) {
+            double sum = 0;
+            for (int j = 0; j < cols; j++) {
+                sum += tensor.get(i, j);
+            }
+            for (int j = 0; j < cols; j++) {
+                tensor.set(i, j, tensor.get(i, j) / sum);
+            }
+        }
+        return tensor;
+    }
+
+    static Tensor RandomOneHot(Random rand, int rows, int cols, Precision precision) {
+        Tensor tensor = new Tensor(rows, cols, precision);
+        for (int i = 0; i < rows; i++) {
+            tensor.set(i, rand.nextInt(cols), 1);
+        }
+        return tensor;
+    }
+
+    static double[][] RandomArray(Random rand, int rows, int cols) {
+        double[][] array = new double[rows][cols];
+        for (double[] row : array) {
+            for (int j = 0; j < cols; j++) {
+                row[j] = rand.nextDouble();
+            }
+        }
+        return array;
+    }
+
+    static int[] ParseLayerSizes(String layerSizes) {
+        return Arrays.stream(layerSizes.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * Selects the SIMD kernels or the scalar loops. The benchmarks fork with jdk.incubator.vector resolved,
+     * so both are available.
+     */
+    static void SetVectorized(boolean vectorized) {
+        Vectorization.setEnabled(vectorized);
+    }
+}
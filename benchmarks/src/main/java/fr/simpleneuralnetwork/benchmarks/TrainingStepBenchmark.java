@@ -0,0 +1,64 @@
+package fr.simpleneuralnetwork.benchmarks;
+
+import fr.simpleneuralnetwork.model.NeuralNetwork;
+import fr.simpleneuralnetwork.model.TrainingWorkspace;
+import fr.simpleneuralnetwork.utils.Precision;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full mini-batch step of a whole network: forward pass, backward pass and weight update,
+ * on a batch already loaded in the training workspace.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class TrainingStepBenchmark {
+
+    @Param({"784,128,10", "784,512,256,10"})
+    public String layerSizes;
+
+    @Param({"32", "256"})
+    public int batchSize;
+
+    @Param({"relu"})
+    public String hiddenActivation;
+
+    @Param({"DOUBLE", "FLOAT"})
+    public Precision precision;
+
+    @Param({"true", "false"})
+    public boolean vectorized;
+
+    private NeuralNetwork network;
+    private TrainingWorkspace workspace;
+
+    @Setup
+    public void Setup() {
+        SyntheticData.SetVectorized(vectorized);
+        Random rand = new Random(SyntheticData.SEED);
+        int[] sizes = SyntheticData.ParseLayerSizes(layerSizes);
+        int outputsNumber = sizes[sizes.length - 1];
+
+        network = new NeuralNetwork(sizes, "cross_entropy", hiddenActivation, "softmax", precision);
+        workspace = network.AllocateWorkspaces(batchSize, outputsNumber)[0];
+        workspace.Resize(batchSize);
+        workspace.getInputs().CopyRowsFrom(
+                SyntheticData.RandomTensor(rand, batchSize, sizes[0], precision, 0, 1), 0);
+        workspace.getExpectedOutputs().CopyRowsFrom(
+                SyntheticData.RandomOneHot(rand, batchSize, outputsNumber, precision), 0);
+    }
+
+    @Benchmark
+    public NeuralNetwork TrainingStep() {
+        network.NNForwardPropagationBatch(workspace);
+        network.BackPropagation(workspace);
+        network.UpdateAllWeights(0.01, batchSize);
+        return network;
+    }
+}
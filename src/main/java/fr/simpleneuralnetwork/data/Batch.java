@@ -0,0 +1,151 @@
+package fr.simpleneuralnetwork.data;
+
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+
+/**
+ * Reusable buffer holding one mini-batch. Its tensors are allocated for the largest batch
+ * and resized to the number of samples actually loaded.
+ * <p>
+ * A batch made for a dataset with labels holds them instead of one-hot expected outputs.
+ */
+public class Batch implements IDataset {
+
+    private final Tensor inputs;
+    private final Tensor expectedOutputs;
+    private final int[] labels;
+    private final int classesNumber;
+
+    public Batch(int maxBatchSize, int featuresNumber, int expectedOutputsNumber) {
+        this(maxBatchSize, featuresNumber, expectedOutputsNumber, Precision.DOUBLE);
+    }
+
+    public Batch(int maxBatchSize, int featuresNumber, int expectedOutputsNumber, Precision precision) {
+        this(maxBatchSize, featuresNumber, expectedOutputsNumber, precision, false);
+    }
+
+    /**
+     * With labels, expectedOutputsNumber is the number of classes.
+     */
+    public Batch(int maxBatchSize, int featuresNumber, int expectedOutputsNumber, Precision precision, boolean labels) {
+        inputs = new Tensor(maxBatchSize, featuresNumber, precision);
+        expectedOutputs = labels ? null : new Tensor(maxBatchSize, expectedOutputsNumber, precision);
+        this.labels = labels ? new int[maxBatchSize] : null;
+        classesNumber = expectedOutputsNumber;
+    }
+
+    /**
+     * A batch able to hold the samples of this dataset, with labels if it has some.
+     */
+    public static Batch For(IDataset dataset, int maxBatchSize, Precision precision) {
+        return new Batch(maxBatchSize, dataset.getFeaturesNumber(), dataset.getExpectedOutputsNumber(), precision,
+                dataset.HasLabels());
+    }
+
+    /**
+     * Loads the samples [start, start + size[ of the dataset into this batch.
+     */
+    public void Load(IDataset dataset, int start, int size) {
+        inputs.Resize(size);
+        if (labels != null) {
+            dataset.FillBatch(start, inputs, labels);
+            return;
+        }
+        expectedOutputs.Resize(size);
+        dataset.FillBatch(start, inputs, expectedOutputs);
+    }
+
+    /**
+     * Loads the samples indices[from], ..., indices[from + size - 1] of the dataset into this batch.
+     */
+    public void Load(IDataset dataset, int[] indices, int from, int size) {
+        inputs.Resize(size);
+        if (labels != null) {
+            dataset.FillBatch(indices, from, inputs, labels);
+            return;
+        }
+        expectedOutputs.Resize(size);
+        dataset.FillBatch(indices, from, inputs, expectedOutputs);
+    }
+
+    public Tensor getInputs() {
+        return inputs;
+    }
+
+    /**
+     * The expected outputs, or null if this batch holds labels.
+     */
+    public Tensor getExpectedOutputs() {
+        return expectedOutputs;
+    }
+
+    /**
+     * The labels of the loaded samples, followed by stale ones up to the largest batch, or null.
+     */
+    public int[] getLabels() {
+        return labels;
+    }
+
+    @Override
+    public int getSize() {
+        return inputs.getRows();
+    }
+
+    @Override
+    public int getFeaturesNumber() {
+        return inputs.getCols();
+    }
+
+    @Override
+    public int getExpectedOutputsNumber() {
+        return classesNumber;
+    }
+
+    @Override
+    public void FillRow(int index, Tensor inputs, Tensor expectedOutputs, int row) {
+        inputs.CopyRow(this.inputs, index, row);
+        if (labels != null) {
+            expectedOutputs.SetOneHotRow(row, labels[index]);
+        } else {
+            expectedOutputs.CopyRow(this.expectedOutputs, index, row);
+        }
+    }
+
+    @Override
+    public void FillBatch(int start, Tensor inputs, Tensor expectedOutputs) {
+        if (labels != null) {
+            IDataset.super.FillBatch(start, inputs, expectedOutputs);
+            return;
+        }
+        inputs.CopyRowsFrom(this.inputs, start);
+        expectedOutputs.CopyRowsFrom(this.expectedOutputs, start);
+    }
+
+    @Override
+    public boolean HasLabels() {
+        return labels != null;
+    }
+
+    @Override
+    public int GetLabel(int index) {
+        if (labels == null) {
+            return IDataset.super.GetLabel(index);
+        }
+        return labels[index];
+    }
+
+    @Override
+    public void FillInputs(int index, Tensor inputs, int row) {
+        inputs.CopyRow(this.inputs, index, row);
+    }
+
+    @Override
+    public void FillBatch(int start, Tensor inputs, int[] labels) {
+        if (this.labels == null) {
+            IDataset.super.FillBatch(start, inputs, labels);
+            return;
+        }
+        inputs.CopyRowsFrom(this.inputs, start);
+        System.arraycopy(this.labels, start, labels, 0, inputs.getRows());
+    }
+}
@@ -0,0 +1,68 @@
+package fr.simpleneuralnetwork.data;
+
+import fr.simpleneuralnetwork.utils.Tensor;
+
+/**
+ * View of the consecutive samples [start, start + size[ of another dataset, used to hold out a validation set.
+ */
+public class DatasetRange implements IDataset {
+
+    private final IDataset dataset;
+    private final int start;
+    private final int size;
+
+    public DatasetRange(IDataset dataset, int start, int size) {
+        if (start < 0 || size < 0 || start + size > dataset.getSize()) {
+            throw new IllegalArgumentException("The range [" + start + ", " + (start + size)
+                    + "[ is not within the " + dataset.getSize() + " samples of the dataset.");
+        }
+        this.dataset = dataset;
+        this.start = start;
+        this.size = size;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getFeaturesNumber() {
+        return dataset.getFeaturesNumber();
+    }
+
+    @Override
+    public int getExpectedOutputsNumber() {
+        return dataset.getExpectedOutputsNumber();
+    }
+
+    @Override
+    public void FillRow(int index, Tensor inputs, Tensor expectedOutputs, int row) {
+        dataset.FillRow(start + index, inputs, expectedOutputs, row);
+    }
+
+    @Override
+    public void FillBatch(int start, Tensor inputs, Tensor expectedOutputs) {
+        dataset.FillBatch(this.start + start, inputs, expectedOutputs);
+    }
+
+    @Override
+    public boolean HasLabels() {
+        return dataset.HasLabels();
+    }
+
+    @Override
+    public int GetLabel(int index) {
+        return dataset.GetLabel(start + index);
+    }
+
+    @Override
+    public void FillInputs(int index, Tensor inputs, int row) {
+        dataset.FillInputs(start + index, inputs, row);
+    }
+
+    @Override
+    public void FillBatch(int start, Tensor inputs, int[] labels) {
+        dataset.FillBatch(this.start + start, inputs, labels);
+    }
+}
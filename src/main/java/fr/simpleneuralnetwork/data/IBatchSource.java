@@ -0,0 +1,37 @@
+package fr.simpleneuralnetwork.data;
+
+/**
+ * Stream of mini-batches, read one epoch at a time:
+ * <pre>
+ * source.StartEpoch(epoch);
+ * for (Batch batch = source.Next(); batch != null; batch = source.Next()) {
+ *     ...
+ *     source.Release(batch);
+ * }
+ * </pre>
+ */
+public interface IBatchSource extends AutoCloseable {
+
+    int getBatchSize();
+    int getFeaturesNumber();
+    int getExpectedOutputsNumber();
+
+    /**
+     * Starts streaming the given epoch. Sources that shuffle derive the order from the epoch number,
+     * so an epoch can be replayed identically.
+     */
+    void StartEpoch(int epoch);
+
+    /**
+     * Returns the next batch of the epoch, or null once the epoch is over.
+     */
+    Batch Next();
+
+    /**
+     * Gives a batch returned by {@link #Next()} back to the source, which may then refill it.
+     */
+    void Release(Batch batch);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,76 @@
+package fr.simpleneuralnetwork.data;
+
+import fr.simpleneuralnetwork.utils.Tensor;
+
+/**
+ * Source of samples for training. Implementations must allow concurrent calls that write
+ * to disjoint destination rows.
+ */
+public interface IDataset {
+
+    int getSize();
+    int getFeaturesNumber();
+    int getExpectedOutputsNumber();
+
+    /**
+     * Writes sample {@code index} into row {@code row} of the given tensors, as network inputs and expected outputs.
+     */
+    void FillRow(int index, Tensor inputs, Tensor expectedOutputs, int row);
+
+    /**
+     * Writes the samples [start, start + inputs.getRows()[ into the given tensors.
+     */
+    default void FillBatch(int start, Tensor inputs, Tensor expectedOutputs) {
+        for (int i = 0; i < inputs.getRows(); i++) {
+            FillRow(start + i, inputs, expectedOutputs, i);
+        }
+    }
+
+    /**
+     * Gathers the samples indices[from], indices[from + 1], ... into the rows of the given tensors.
+     */
+    default void FillBatch(int[] indices, int from, Tensor inputs, Tensor expectedOutputs) {
+        for (int i = 0; i < inputs.getRows(); i++) {
+            FillRow(indices[from + i], inputs, expectedOutputs, i);
+        }
+    }
+
+    /**
+     * Whether the expected outputs are class labels, one-hot encoded by {@link #FillRow}.
+     * Training then reads the labels themselves, through {@link #GetLabel} and {@link #FillInputs}.
+     */
+    default boolean HasLabels() {
+        return false;
+    }
+
+    /**
+     * Class label of a sample, only for datasets with labels.
+     */
+    default int GetLabel(int index) {
+        throw new UnsupportedOperationException("This dataset has no class labels.");
+    }
+
+    /**
+     * Writes the inputs of sample {@code index} into row {@code row}, only for datasets with labels.
+     */
+    default void FillInputs(int index, Tensor inputs, int row) {
+        throw new UnsupportedOperationException("This dataset has no class labels.");
+    }
+
+    /**
+     * Writes the samples [start, start + inputs.getRows()[ into the inputs and their class labels into labels.
+     */
+    default void FillBatch(int start, Tensor inputs, int[] labels) {
+        for (int i = 0; i < inputs.getRows(); i++) {
+            FillInputs(start + i, inputs, i);
+            labels[i] = GetLabel(start + i);
+        }
+    }
+
+    default void FillBatch(int[] indices, int from, Tensor inputs, int[] labels) {
+        for (int i = 0; i < inputs.getRows(); i++) {
+            FillInputs(indices[from + i], inputs, i);
+            labels[i] = GetLabel(indices[from + i]);
+        }
+    }
+}
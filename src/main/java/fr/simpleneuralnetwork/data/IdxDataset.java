@@ -0,0 +1,129 @@
+package fr.simpleneuralnetwork.data;
+
+import fr.simpleneuralnetwork.utils.Tensor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Images and labels read straight from memory-mapped IDX files (the MNIST format).
+ * Pixels stay as unsigned bytes in the page cache and are normalized to [0, 1]
+ * only when a batch is filled; training reads the labels as they are.
+ */
+public class IdxDataset implements IDataset {
+
+    public static final int IMAGES_MAGIC_NUMBER = 0x00000803;
+    public static final int LABELS_MAGIC_NUMBER = 0x00000801;
+    private static final int IMAGES_HEADER_SIZE = 16;
+    private static final int LABELS_HEADER_SIZE = 8;
+
+    private final MappedByteBuffer images;
+    private final MappedByteBuffer labels;
+    private final int size;
+    private final int featuresNumber;
+    private final int classesNumber;
+
+    public IdxDataset(String imagesPath, String labelsPath) throws IOException {
+        images = Map(imagesPath);
+        labels = Map(labelsPath);
+
+        /*
+        [offset] [type]          [value]          [description]
+        0000     32-bit integer  0x00000803(2051) magic number
+        0004     32-bit integer  60000            number of images
+        0008     32-bit integer  28               number of rows
+        0012     32-bit integer  28               number of columns
+         */
+        if (images.getInt(0) != IMAGES_MAGIC_NUMBER) {
+            throw new IOException(imagesPath + " is not an IDX image file.");
+        }
+        /*
+        [offset] [type]          [value]          [description]
+        0000     32-bit integer  0x00000801(2049) magic number (MSB first)
+        0004     32-bit integer  60000            number of items
+         */
+        if (labels.getInt(0) != LABELS_MAGIC_NUMBER) {
+            throw new IOException(labelsPath + " is not an IDX label file.");
+        }
+
+        size = images.getInt(4);
+        featuresNumber = images.getInt(8) * images.getInt(12);
+
+        if (labels.getInt(4) != size) {
+            throw new IOException("Got " + size + " images but " + labels.getInt(4) + " labels.");
+        }
+        if (images.capacity() < IMAGES_HEADER_SIZE + (long) size * featuresNumber
+                || labels.capacity() < LABELS_HEADER_SIZE + size) {
+            throw new IOException("Truncated IDX file.");
+        }
+
+        int maxLabel = 0;
+        for (int i = 0; i < size; i++) {
+            maxLabel = Math.max(maxLabel, GetLabel(i));
+        }
+        classesNumber = maxLabel + 1;
+    }
+
+    private static MappedByteBuffer Map(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getFeaturesNumber() {
+        return featuresNumber;
+    }
+
+    @Override
+    public int getExpectedOutputsNumber() {
+        return classesNumber;
+    }
+
+    @Override
+    public boolean HasLabels() {
+        return true;
+    }
+
+    @Override
+    public int GetLabel(int index) {
+        return labels.get(LABELS_HEADER_SIZE + index) & 0xFF;
+    }
+
+    /**
+     * Copies the images and labels into the heap, to stop reading the files.
+     */
+    public ByteDataset ToByteDataset() {
+        if ((long) size * featuresNumber > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("The " + size + " images do not fit in a single array.");
+        }
+        byte[] imageBytes = new byte[size * featuresNumber];
+        byte[] labelBytes = new byte[size];
+        images.get(IMAGES_HEADER_SIZE, imageBytes);
+        labels.get(LABELS_HEADER_SIZE, labelBytes);
+        return new ByteDataset(imageBytes, labelBytes, featuresNumber);
+    }
+
+    @Override
+    public void FillRow(int index, Tensor inputs, Tensor expectedOutputs, int row) {
+        FillInputs(index, inputs, row);
+        expectedOutputs.SetOneHotRow(row, GetLabel(index));
+    }
+
+    @Override
+    public void FillInputs(int index, Tensor inputs, int row) {
+        int pixel = IMAGES_HEADER_SIZE + index * featuresNumber;
+
+        for (int j = 0; j < featuresNumber; j++) {
+            inputs.set(row, j, (images.get(pixel + j) & 0xFF) / 255.0);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package fr.simpleneuralnetwork.data;
+
+import fr.simpleneuralnetwork.utils.Precision;
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Batch source that decodes the next batches of a dataset on a background thread while the
+ * current one is being trained on. A fixed pool of batch buffers circulates between the two
+ * threads, so streaming does not allocate.
+ * <p>
+ * When shuffling is enabled, each epoch visits the samples in the order of a permutation drawn from
+ * the seed and the epoch number, and batches are gathered row by row into the same buffers.
+ */
+public class PrefetchBatchSource implements IBatchSource {
+
+    public static final int DEFAULT_PREFETCHED_BATCHES = 2;
+
+    // Marks the end of an epoch in the queue of ready batches.
+    private static final Batch END_OF_EPOCH = new Batch(0, 0, 0);
+
+    private final IDataset dataset;
+    private final int batchSize;
+    private final BlockingQueue<Batch> freeBatches;
+    private final BlockingQueue<Batch> readyBatches;
+    private final ExecutorService loader;
+    private volatile Throwable loadingFailure;
+
+    private boolean shuffle = false;
+    private long seed;
+    private int[] permutation;
+
+    public PrefetchBatchSource(IDataset dataset, int batchSize) {
+        this(dataset, batchSize, DEFAULT_PREFETCHED_BATCHES);
+    }
+
+    public PrefetchBatchSource(IDataset dataset, int batchSize, int prefetchedBatches) {
+        this(dataset, batchSize, prefetchedBatches, Precision.DOUBLE);
+    }
+
+    /**
+     * Batches are decoded directly in the given precision, which should be the one of the network trained on them.
+     */
+    public PrefetchBatchSource(IDataset dataset, int batchSize, int prefetchedBatches, Precision precision) {
+        this.dataset = dataset;
+        this.batchSize = batchSize;
+        this.freeBatches = new ArrayBlockingQueue<>(prefetchedBatches + 1);
+        this.readyBatches = new ArrayBlockingQueue<>(prefetchedBatches + 2);
+
+        for (int i = 0; i < prefetchedBatches + 1; i++) {
+            freeBatches.add(Batch.For(dataset, batchSize, precision));
+        }
+
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int getFeaturesNumber() {
+        return dataset.getFeaturesNumber();
+    }
+
+    @Override
+    public int getExpectedOutputsNumber() {
+        return dataset.getExpectedOutputsNumber();
+    }
+
+    public boolean IsShuffled() {
+        return shuffle;
+    }
+
+    /**
+     * Enables shuffling, with a permutation per epoch derived from this seed.
+     */
+    public void setShuffleSeed(long seed) {
+        this.shuffle = true;
+        this.seed = seed;
+        if (permutation == null) {
+            permutation = new int[dataset.getSize()];
+        }
+    }
+
+    @Override
+    public void StartEpoch(int epoch) {
+        if (shuffle) {
+            Shuffle(epoch);
+        }
+        loader.execute(this::LoadEpoch);
+    }
+
+    /**
+     * Fisher-Yates shuffle of the identity, so the order only depends on the seed and the epoch.
+     */
+    private void Shuffle(int epoch) {
+        Random random = new Random(seed ^ (epoch * 0x9E3779B97F4A7C15L));
+
+        for (int i = 0; i < permutation.length; i++) {
+            permutation[i] = i;
+        }
+        for (int i = permutation.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+        }
+    }
+
+    private void LoadEpoch() {
+        try {
+            for (int start = 0; start < dataset.getSize(); start += batchSize) {
+                Batch batch = freeBatches.take();
+                int size = Math.min(batchSize, dataset.getSize() - start);
+
+                if (shuffle) {
+                    batch.Load(dataset, permutation, start, size);
+                } else {
+                    batch.Load(dataset, start, size);
+                }
+                readyBatches.put(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException | Error e) {
+            loadingFailure = e;
+        }
+        readyBatches.add(END_OF_EPOCH);
+    }
+
+    @Override
+    public Batch Next() {
+        try {
+            Batch batch = readyBatches.take();
+            if (batch == END_OF_EPOCH) {
+                if (loadingFailure != null) {
+                    throw new IllegalStateException("Could not load the next batch.", loadingFailure);
+                }
+                return null;
+            }
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the next batch.", e);
+        }
+    }
+
+    @Override
+    public void Release(Batch batch) {
+        freeBatches.add(batch);
+    }
+
+    @Override
+    public void close() {
+        loader.shutdownNow();
+    }
+}
@@ -0,0 +1,101 @@
+package fr.simpleneuralnetwork.data;
+
+import fr.simpleneuralnetwork.utils.Tensor;
+
+/**
+ * Dataset already held in memory as an input tensor, and either an expected output tensor or class labels.
+ */
+public class TensorDataset implements IDataset {
+
+    private final Tensor inputs;
+    private final Tensor expectedOutputs;
+    private final int[] labels;
+    private final int classesNumber;
+
+    public TensorDataset(Tensor inputs, Tensor expectedOutputs) {
+        if (inputs.getRows() != expectedOutputs.getRows()) {
+            throw new IllegalArgumentException("Got " + inputs.getRows() + " inputs but "
+                    + expectedOutputs.getRows() + " expected outputs.");
+        }
+        this.inputs = inputs;
+        this.expectedOutputs = expectedOutputs;
+        this.labels = null;
+        this.classesNumber = expectedOutputs.getCols();
+    }
+
+    /**
+     * With a class label per sample instead of one-hot expected outputs.
+     */
+    public TensorDataset(Tensor inputs, int[] labels, int classesNumber) {
+        if (inputs.getRows() != labels.length) {
+            throw new IllegalArgumentException("Got " + inputs.getRows() + " inputs but " + labels.length + " labels.");
+        }
+        this.inputs = inputs;
+        this.expectedOutputs = null;
+        this.labels = labels;
+        this.classesNumber = classesNumber;
+    }
+
+    @Override
+    public int getSize() {
+        return inputs.getRows();
+    }
+
+    @Override
+    public int getFeaturesNumber() {
+        return inputs.getCols();
+    }
+
+    @Override
+    public int getExpectedOutputsNumber() {
+        return classesNumber;
+    }
+
+    @Override
+    public void FillRow(int index, Tensor inputs, Tensor expectedOutputs, int row) {
+        inputs.CopyRow(this.inputs, index, row);
+        if (labels != null) {
+            expectedOutputs.SetOneHotRow(row, labels[index]);
+        } else {
+            expectedOutputs.CopyRow(this.expectedOutputs, index, row);
+        }
+    }
+
+    @Override
+    public void FillBatch(int start, Tensor inputs, Tensor expectedOutputs) {
+        if (labels != null) {
+            IDataset.super.FillBatch(start, inputs, expectedOutputs);
+            return;
+        }
+        inputs.CopyRowsFrom(this.inputs, start);
+        expectedOutputs.CopyRowsFrom(this.expectedOutputs, start);
+    }
+
+    @Override
+    public boolean HasLabels() {
+        return labels != null;
+    }
+
+    @Override
+    public int GetLabel(int index) {
+        if (labels == null) {
+            return IDataset.super.GetLabel(index);
+        }
+        return labels[index];
+    }
+
+    @Override
+    public void FillInputs(int index, Tensor inputs, int row) {
+        inputs.CopyRow(this.inputs, index, row);
+    }
+
+    @Override
+    public void FillBatch(int start, Tensor inputs, int[] labels) {
+        if (this.labels == null) {
+            IDataset.super.FillBatch(start, inputs, labels);
+            return;
+        }
+        inputs.CopyRowsFrom(this.inputs, start);
+        System.arraycopy(this.labels, start, labels, 0, inputs.getRows());
+    }
+}
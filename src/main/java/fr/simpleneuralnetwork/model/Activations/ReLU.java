@@ -1,6 +1,9 @@
 package fr.simpleneuralnetwork.model.Activations;
 
 import fr.simpleneuralnetwork.model.IActivation;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
 
 public class ReLU implements IActivation {
 
@@ -14,6 +17,38 @@ public class ReLU implements IActivation {
         return z > 0 ? 1 : 0;
     }
 
+    @Override
+    public double DerivativeFromOutput(double z, double output) {
+        return output > 0 ? 1 : 0;
+    }
+
+    @Override
+    public void ApplyInto(Tensor input, Tensor result) {
+        if (Vectorization.Applies(input, result)) {
+            VectorKernels.ReLU(input, result);
+        } else {
+            IActivation.super.ApplyInto(input, result);
+        }
+    }
+
+    @Override
+    public void DerivativeInto(Tensor input, Tensor result) {
+        if (Vectorization.Applies(input, result)) {
+            VectorKernels.ReLUDerivative(input, result);
+        } else {
+            IActivation.super.DerivativeInto(input, result);
+        }
+    }
+
+    @Override
+    public void ChainDerivative(Tensor linearInputs, Tensor outputs, Tensor gradients) {
+        if (Vectorization.Applies(outputs, gradients)) {
+            VectorKernels.ReLUChain(outputs, gradients);
+        } else {
+            IActivation.super.ChainDerivative(linearInputs, outputs, gradients);
+        }
+    }
+
     @Override
     public String GetName() {
         return "relu";
@@ -1,6 +1,9 @@
 package fr.simpleneuralnetwork.model.Activations;
 
 import fr.simpleneuralnetwork.model.IActivation;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
 
 public class SiLU implements IActivation {
 
@@ -15,6 +18,42 @@ public class SiLU implements IActivation {
         return (1.0 + exp + z * exp) / ((1 + exp)*(1 + exp));
     }
 
+    /**
+     * With s = sigmoid(z) = output / z, the derivative is s * (1 + z * (1 - s)).
+     */
+    @Override
+    public double DerivativeFromOutput(double z, double output) {
+        double sigmoid = z != 0 ? output / z : 0.5;
+        return sigmoid * (1 + z * (1 - sigmoid));
+    }
+
+    @Override
+    public void ApplyInto(Tensor input, Tensor result) {
+        if (Vectorization.Applies(input, result)) {
+            VectorKernels.SiLU(input, result);
+        } else {
+            IActivation.super.ApplyInto(input, result);
+        }
+    }
+
+    @Override
+    public void DerivativeInto(Tensor input, Tensor result) {
+        if (Vectorization.Applies(input, result)) {
+            VectorKernels.SiLUDerivative(input, result);
+        } else {
+            IActivation.super.DerivativeInto(input, result);
+        }
+    }
+
+    @Override
+    public void ChainDerivative(Tensor linearInputs, Tensor outputs, Tensor gradients) {
+        if (Vectorization.Applies(linearInputs, outputs, gradients)) {
+            VectorKernels.SiLUChain(linearInputs, outputs, gradients);
+        } else {
+            IActivation.super.ChainDerivative(linearInputs, outputs, gradients);
+        }
+    }
+
     @Override
     public String GetName() {
         return "silu";
@@ -1,6 +1,9 @@
 package fr.simpleneuralnetwork.model.Activations;
 
 import fr.simpleneuralnetwork.model.IActivation;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
 
 public class Sigmoid implements IActivation {
 
@@ -15,6 +18,38 @@ public class Sigmoid implements IActivation {
         return sigmoid * (1 - sigmoid);
     }
 
+    @Override
+    public double DerivativeFromOutput(double z, double output) {
+        return output * (1 - output);
+    }
+
+    @Override
+    public void ApplyInto(Tensor input, Tensor result) {
+        if (Vectorization.Applies(input, result)) {
+            VectorKernels.Sigmoid(input, result);
+        } else {
+            IActivation.super.ApplyInto(input, result);
+        }
+    }
+
+    @Override
+    public void DerivativeInto(Tensor input, Tensor result) {
+        if (Vectorization.Applies(input, result)) {
+            VectorKernels.SigmoidDerivative(input, result);
+        } else {
+            IActivation.super.DerivativeInto(input, result);
+        }
+    }
+
+    @Override
+    public void ChainDerivative(Tensor linearInputs, Tensor outputs, Tensor gradients) {
+        if (Vectorization.Applies(outputs, gradients)) {
+            VectorKernels.SigmoidChain(outputs, gradients);
+        } else {
+            IActivation.super.ChainDerivative(linearInputs, outputs, gradients);
+        }
+    }
+
     @Override
     public String GetName() {
         return "sigmoid";
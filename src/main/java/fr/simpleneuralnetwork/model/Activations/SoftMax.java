@@ -1,8 +1,9 @@
 package fr.simpleneuralnetwork.model.Activations;
 
 import fr.simpleneuralnetwork.model.IActivation;
-
-import java.util.Arrays;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
 
 public class SoftMax implements IActivation {
 
@@ -16,58 +17,66 @@ public class SoftMax implements IActivation {
         return 0;
     }
 
-    private double[] ApplyArr(double[] z) {
-        double max = Arrays.stream(z).max().orElse(0.01);
-        double sum = 0;
-        double[] res = new double[z.length];
-
-        for (int i = 0; i < z.length; i++) {
-            res[i] = Math.exp(z[i] - max);
-            sum += res[i];
+    private void ApplyRow(Tensor input, Tensor result, int row) {
+        int length = input.getCols();
+        double max = input.get(row, 0);
+        for (int i = 1; i < length; i++) {
+            max = Math.max(max, input.get(row, i));
         }
 
-        for (int i = 0; i < z.length; i++) {
-            res[i] /= sum;
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            result.set(row, i, Math.exp(input.get(row, i) - max));
+            sum += result.get(row, i);
         }
 
-        return res;
+        for (int i = 0; i < length; i++) {
+            result.set(row, i, result.get(row, i) / sum);
+        }
     }
 
-    private double[] DerivativeArr(double[] z) {
-        double[] softmax = ApplyArr(z);
-        double[] res = new double[z.length];
+    private void DerivativeRow(Tensor input, Tensor result, int row) {
+        ApplyRow(input, result, row);
 
-        for (int i = 0; i < z.length; i++) {
-            res[i] = softmax[i] * (1 - softmax[i]);
+        for (int i = 0; i < input.getCols(); i++) {
+            double softmax = result.get(row, i);
+            result.set(row, i, softmax * (1 - softmax));
         }
-
-        return res;
     }
 
     @Override
-    public double[][] ApplyMatrix(double[][] input) {
-        int rows = input.length;
-        int cols = input[0].length;
-        double[][] result = new double[rows][cols];
-
-        for (int i = 0; i < rows; i++) {
-            result[i] = ApplyArr(input[i]);
+    public void ApplyInto(Tensor input, Tensor result) {
+        if (Vectorization.Applies(input, result)) {
+            VectorKernels.SoftMax(input, result);
+            return;
+        }
+        for (int i = 0; i < input.getRows(); i++) {
+            ApplyRow(input, result, i);
         }
-
-        return result;
     }
 
     @Override
-    public double[][] DerivativeMatrix(double[][] input) {
-        int rows = input.length;
-        int cols = input[0].length;
-        double[][] result = new double[rows][cols];
-
-        for (int i = 0; i < rows; i++) {
-            result[i] = DerivativeArr(input[i]);
+    public void DerivativeInto(Tensor input, Tensor result) {
+        for (int i = 0; i < input.getRows(); i++) {
+            DerivativeRow(input, result, i);
         }
+    }
 
-        return  result;
+    /**
+     * Softmax outputs depend on the whole row, so the gradient goes through the full Jacobian:
+     * dL/dz_i = y_i * (dL/dy_i - sum_j dL/dy_j * y_j), computed from the cached outputs y.
+     */
+    @Override
+    public void ChainDerivative(Tensor linearInputs, Tensor outputs, Tensor gradients) {
+        for (int i = 0; i < gradients.getRows(); i++) {
+            double dot = 0;
+            for (int j = 0; j < gradients.getCols(); j++) {
+                dot += gradients.get(i, j) * outputs.get(i, j);
+            }
+            for (int j = 0; j < gradients.getCols(); j++) {
+                gradients.set(i, j, outputs.get(i, j) * (gradients.get(i, j) - dot));
+            }
+        }
     }
 
     @Override
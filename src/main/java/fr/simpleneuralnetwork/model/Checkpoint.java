@@ -0,0 +1,337 @@
+package fr.simpleneuralnetwork.model;
+
+import fr.simpleneuralnetwork.model.Optimizers.Adam;
+import fr.simpleneuralnetwork.model.Optimizers.Momentum;
+import fr.simpleneuralnetwork.model.Optimizers.RMSProp;
+import fr.simpleneuralnetwork.model.Optimizers.SGD;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Snapshot of a training run, to resume it after the epoch it was taken at.
+ * <p>
+ * A checkpoint file starts with the model, in the format of {@link ModelFile}, so it can also be loaded
+ * as a plain model. The training state follows, little-endian:
+ * <pre>
+ * [type]          [value]          [description]
+ * 32-bit integer  0x434E4E53       magic number ("SNNC")
+ * 32-bit integer  2                format version
+ * 32-bit integer  12               next epoch
+ * 64-bit integer  2400             number of weight updates so far
+ * double          0.0009           learning rate of the next epoch
+ * double          0.001            initial learning rate
+ * double          0.0001           learning rate decay
+ * 64-bit integer  0                shuffling seed
+ * 32-bit integer  1                1 if the samples are shuffled, 0 otherwise
+ * string          adam             optimizer (32-bit length, then UTF-8 bytes)
+ * 32-bit integer  3                number of hyperparameters
+ * double          ...              hyperparameters
+ * 32-bit integer  2                number of state tensors per parameter tensor
+ * double          0.231            lowest validation loss, NaN if not validated yet
+ * 32-bit integer  9                epoch of the lowest validation loss, -1 if not validated yet
+ * 32-bit integer  1                number of validations since the loss last improved
+ * 32-bit integer  1                1 if the best weights follow the optimizer state, 0 otherwise
+ * padding                          up to the next multiple of 8 bytes
+ * double or float ...              for each layer, its weights state tensors then its biases state tensors
+ * double or float ...              for each layer, its best weights then its best biases
+ * </pre>
+ * The best weights are only saved when they are kept in memory: a best weights file already holds them.
+ * Version 1 checkpoints, without the early stopping state, are still read.
+ * Only the seed of the shuffling is saved: the order of each epoch is derived from the seed and the epoch
+ * number, so a resumed run visits the samples in the same order as an uninterrupted one.
+ */
+final class Checkpoint {
+
+    static final int MAGIC = 0x434E4E53;
+    static final int VERSION = 2;
+
+    private final Tensor[] weights;
+    private final Tensor[] biases;
+    private Tensor[][] weightsState;
+    private Tensor[][] biasesState;
+    private IOptimizer optimizer;
+    private Tensor[] bestWeights;
+    private Tensor[] bestBiases;
+    private boolean hasBestWeights;
+
+    private int nextEpoch;
+    private long updatesNumber;
+    private double learningRate;
+    private double initialLearningRate;
+    private double decay;
+    private long seed;
+    private boolean shuffle;
+    private double bestValidationLoss;
+    private int bestEpoch;
+    private int validationsWithoutImprovement;
+
+    /**
+     * Allocates the buffers the weights of the network are copied into.
+     */
+    Checkpoint(NeuralNetwork network) {
+        Layer[] layers = network.getLayers();
+        weights = new Tensor[layers.length];
+        biases = new Tensor[layers.length];
+
+        for (int l = 0; l < layers.length; l++) {
+            weights[l] = layers[l].getWeights().Copy();
+            biases[l] = layers[l].getBiases().Copy();
+        }
+    }
+
+    /**
+     * Copies the weights, the optimizer state and the early stopping state of the network into this checkpoint,
+     * so it can be written while training goes on.
+     */
+    void Capture(NeuralNetwork network, int nextEpoch, double learningRate, double initialLearningRate,
+                 double decay) {
+        Layer[] layers = network.getLayers();
+        IOptimizer currentOptimizer = network.getOptimizer();
+
+        if (optimizer == null || optimizer.getStateTensorsNumber() != currentOptimizer.getStateTensorsNumber()) {
+            weightsState = new Tensor[layers.length][];
+            biasesState = new Tensor[layers.length][];
+            for (int l = 0; l < layers.length; l++) {
+                weightsState[l] = NewState(currentOptimizer, weights[l]);
+                biasesState[l] = NewState(currentOptimizer, biases[l]);
+            }
+        }
+        optimizer = currentOptimizer;
+
+        for (int l = 0; l < layers.length; l++) {
+            weights[l].CopyRowsFrom(layers[l].getWeights(), 0);
+            biases[l].CopyRowsFrom(layers[l].getBiases(), 0);
+            CaptureState(layers[l].getWeightsState(currentOptimizer), weightsState[l]);
+            CaptureState(layers[l].getBiasesState(currentOptimizer), biasesState[l]);
+        }
+
+        this.nextEpoch = nextEpoch;
+        this.updatesNumber = network.getUpdatesNumber();
+        this.learningRate = learningRate;
+        this.initialLearningRate = initialLearningRate;
+        this.decay = decay;
+        this.seed = network.getSeed();
+        this.shuffle = network.IsShuffling();
+        this.bestValidationLoss = network.getBestValidationLoss();
+        this.bestEpoch = network.getBestEpoch();
+        this.validationsWithoutImprovement = network.getValidationsWithoutImprovement();
+
+        Layer[] bestLayers = network.getBestLayers();
+        hasBestWeights = bestLayers != null;
+        if (hasBestWeights) {
+            if (bestWeights == null) {
+                bestWeights = new Tensor[layers.length];
+                bestBiases = new Tensor[layers.length];
+                for (int l = 0; l < layers.length; l++) {
+                    bestWeights[l] = weights[l].Copy();
+                    bestBiases[l] = biases[l].Copy();
+                }
+            }
+            for (int l = 0; l < layers.length; l++) {
+                bestWeights[l].CopyRowsFrom(bestLayers[l].getWeights(), 0);
+                bestBiases[l].CopyRowsFrom(bestLayers[l].getBiases(), 0);
+            }
+        }
+    }
+
+    // A layer that has not been updated yet by the optimizer has no state, which is the same as a zero state.
+    private static void CaptureState(Tensor[] state, Tensor[] snapshot) {
+        for (int i = 0; i < snapshot.length; i++) {
+            if (state != null) {
+                snapshot[i].CopyRowsFrom(state[i], 0);
+            } else {
+                snapshot[i].Fill(0);
+            }
+        }
+    }
+
+    private static Tensor[] NewState(IOptimizer optimizer, Tensor parameters) {
+        Tensor[] state = new Tensor[optimizer.getStateTensorsNumber()];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = new Tensor(parameters.getRows(), parameters.getCols(), parameters.getPrecision());
+        }
+        return state;
+    }
+
+    /**
+     * Writes the last capture next to the file, then moves it over the file, so that a crash while writing
+     * leaves the previous checkpoint intact.
+     */
+    void Write(NeuralNetwork network, String filePath) throws IOException {
+        Path target = Path.of(filePath);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (FileChannel channel = ModelFile.Open(temporary.toString())) {
+            long position = ModelFile.Write(channel, network, weights, biases);
+
+            ByteBuffer header = WriteHeader();
+            while (header.hasRemaining()) {
+                channel.write(header, position + header.position());
+            }
+            position += header.limit();
+
+            for (int l = 0; l < weights.length; l++) {
+                if (weightsState[l].length > 0) {
+                    position = ModelFile.WriteTensors(channel, position, weightsState[l]);
+                    position = ModelFile.WriteTensors(channel, position, biasesState[l]);
+                }
+            }
+            if (hasBestWeights) {
+                for (int l = 0; l < weights.length; l++) {
+                    position = ModelFile.WriteTensors(channel, position, bestWeights[l], bestBiases[l]);
+                }
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private ByteBuffer WriteHeader() {
+        byte[] name = optimizer.GetName().getBytes(StandardCharsets.UTF_8);
+        double[] hyperparameters = optimizer.getHyperparameters();
+
+        int size = 10 * Integer.BYTES + 2 * Long.BYTES + 4 * Double.BYTES + name.length
+                + hyperparameters.length * Double.BYTES;
+        ByteBuffer header = ByteBuffer.allocate((int) ModelFile.Align(size)).order(ByteOrder.LITTLE_ENDIAN);
+
+        header.putInt(MAGIC).putInt(VERSION).putInt(nextEpoch).putLong(updatesNumber);
+        header.putDouble(learningRate).putDouble(initialLearningRate).putDouble(decay);
+        header.putLong(seed).putInt(shuffle ? 1 : 0);
+        header.putInt(name.length).put(name);
+        header.putInt(hyperparameters.length);
+        for (double hyperparameter : hyperparameters) {
+            header.putDouble(hyperparameter);
+        }
+        header.putInt(optimizer.getStateTensorsNumber());
+        header.putDouble(bestValidationLoss).putInt(bestEpoch).putInt(validationsWithoutImprovement);
+        header.putInt(hasBestWeights ? 1 : 0);
+
+        return header.rewind();
+    }
+
+    /**
+     * Loads the network of a checkpoint with its optimizer and optimizer state, ready to resume training.
+     */
+    static NeuralNetwork Read(String filePath) throws IOException {
+        NeuralNetwork network = ModelFile.Read(filePath);
+        Layer[] layers = network.getLayers();
+        Precision precision = network.getPrecision();
+
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long position = ModelFile.ModelBytes(network);
+            if (position >= channel.size()) {
+                throw new IOException(filePath + " is a model file without training state.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(filePath + " is not a checkpoint file.");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " in " + filePath + ".");
+            }
+
+            int nextEpoch = buffer.getInt();
+            long updatesNumber = buffer.getLong();
+            double learningRate = buffer.getDouble();
+            double initialLearningRate = buffer.getDouble();
+            double decay = buffer.getDouble();
+            long seed = buffer.getLong();
+            boolean shuffle = buffer.getInt() == 1;
+
+            String name = ModelFile.GetString(buffer);
+            double[] hyperparameters = new double[buffer.getInt()];
+            for (int i = 0; i < hyperparameters.length; i++) {
+                hyperparameters[i] = buffer.getDouble();
+            }
+            IOptimizer optimizer = NewOptimizer(name, hyperparameters);
+            int stateTensorsNumber = buffer.getInt();
+            if (stateTensorsNumber != optimizer.getStateTensorsNumber()) {
+                throw new IOException("The " + name + " optimizer has no " + stateTensorsNumber + " state tensors.");
+            }
+            double bestValidationLoss = Double.NaN;
+            int bestEpoch = -1;
+            int validationsWithoutImprovement = 0;
+            boolean hasBestWeights = false;
+            if (version >= 2) {
+                bestValidationLoss = buffer.getDouble();
+                bestEpoch = buffer.getInt();
+                validationsWithoutImprovement = buffer.getInt();
+                hasBestWeights = buffer.getInt() == 1;
+            }
+            buffer.position((int) ModelFile.Align(buffer.position()));
+
+            network.setSeed(seed);
+            network.setShuffle(shuffle);
+            network.setOptimizer(optimizer);
+            for (Layer layer : layers) {
+                Tensor[] weightsState = ReadTensors(buffer, stateTensorsNumber, layer.getWeights(), precision);
+                Tensor[] biasesState = ReadTensors(buffer, stateTensorsNumber, layer.getBiases(), precision);
+                layer.setOptimizerState(optimizer, weightsState, biasesState);
+            }
+
+            Tensor[] bestWeights = null;
+            Tensor[] bestBiases = null;
+            if (hasBestWeights) {
+                bestWeights = new Tensor[layers.length];
+                bestBiases = new Tensor[layers.length];
+                for (int l = 0; l < layers.length; l++) {
+                    bestWeights[l] = ReadTensors(buffer, 1, layers[l].getWeights(), precision)[0];
+                    bestBiases[l] = ReadTensors(buffer, 1, layers[l].getBiases(), precision)[0];
+                }
+            }
+            network.SetResumePoint(nextEpoch, updatesNumber, learningRate, initialLearningRate, decay);
+            network.SetEarlyStoppingState(bestValidationLoss, bestEpoch, validationsWithoutImprovement,
+                    bestWeights, bestBiases);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated checkpoint file " + filePath + ".", e);
+        }
+        return network;
+    }
+
+    private static Tensor[] ReadTensors(ByteBuffer buffer, int count, Tensor parameters, Precision precision) {
+        Tensor[] state = new Tensor[count];
+        for (int i = 0; i < count; i++) {
+            state[i] = new Tensor(parameters.getRows(), parameters.getCols(), precision);
+            if (precision == Precision.FLOAT) {
+                buffer.asFloatBuffer().get(state[i].getFloatData());
+            } else {
+                buffer.asDoubleBuffer().get(state[i].getData());
+            }
+            buffer.position(buffer.position() + state[i].getRows() * state[i].getCols() * precision.getBytes());
+        }
+        return state;
+    }
+
+    private static IOptimizer NewOptimizer(String name, double[] hyperparameters) throws IOException {
+        try {
+            switch (name) {
+                case "sgd":
+                    return new SGD();
+                case "momentum":
+                    return new Momentum(hyperparameters[0]);
+                case "rmsprop":
+                    return new RMSProp(hyperparameters[0], hyperparameters[1]);
+                case "adam":
+                    return new Adam(hyperparameters[0], hyperparameters[1], hyperparameters[2]);
+                default:
+                    throw new IOException("Unknown optimizer " + name + " in checkpoint.");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Invalid hyperparameters for the " + name + " optimizer in checkpoint.", e);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package fr.simpleneuralnetwork.model;
 
-import java.util.stream.IntStream;
+import fr.simpleneuralnetwork.utils.Tensor;
 
 public interface IActivation {
 
@@ -8,29 +8,94 @@ public interface IActivation {
     double Derivative(double z);
     String GetName();
 
-    default double[][] ApplyMatrix(double[][] input) {
-        int rows = input.length;
-        int cols = input[0].length;
-        double[][] result = new double[rows][cols];
+    /**
+     * Derivative at z when output = Apply(z) is already known. Activations whose derivative can be
+     * expressed from their output override this to avoid recomputing it.
+     */
+    default double DerivativeFromOutput(double z, double output) {
+        return Derivative(z);
+    }
+
+    default Tensor ApplyMatrix(Tensor input) {
+        Tensor result = new Tensor(input.getRows(), input.getCols(), input.getPrecision());
+        ApplyInto(input, result);
+        return result;
+    }
 
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[i][j] = Apply(input[i][j]);
+    default Tensor DerivativeMatrix(Tensor input) {
+        Tensor result = new Tensor(input.getRows(), input.getCols(), input.getPrecision());
+        DerivativeInto(input, result);
+        return result;
+    }
+
+    default void ApplyInto(Tensor input, Tensor result) {
+        if (input.IsFloat() || result.IsFloat()) {
+            for (int i = 0; i < input.getRows(); i++) {
+                for (int j = 0; j < input.getCols(); j++) {
+                    result.set(i, j, Apply(input.get(i, j)));
+                }
+            }
+            return;
+        }
+        double[] in = input.getData();
+        double[] out = result.getData();
+
+        for (int i = 0; i < input.getRows(); i++) {
+            int inRow = input.Index(i, 0);
+            int outRow = result.Index(i, 0);
+            for (int j = 0; j < input.getCols(); j++) {
+                out[outRow + j] = Apply(in[inRow + j]);
             }
         }
-        return result;
     }
 
-    default double[][] DerivativeMatrix(double[][] input) {
-        int rows = input.length;
-        int cols = input[0].length;
-        double[][] result = new double[rows][cols];
+    default void DerivativeInto(Tensor input, Tensor result) {
+        if (input.IsFloat() || result.IsFloat()) {
+            for (int i = 0; i < input.getRows(); i++) {
+                for (int j = 0; j < input.getCols(); j++) {
+                    result.set(i, j, Derivative(input.get(i, j)));
+                }
+            }
+            return;
+        }
+        double[] in = input.getData();
+        double[] out = result.getData();
 
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[i][j] = Derivative(input[i][j]);
+        for (int i = 0; i < input.getRows(); i++) {
+            int inRow = input.Index(i, 0);
+            int outRow = result.Index(i, 0);
+            for (int j = 0; j < input.getCols(); j++) {
+                out[outRow + j] = Derivative(in[inRow + j]);
+            }
+        }
+    }
+
+    /**
+     * Multiplies, in place, the gradients of the loss with respect to the outputs by the derivative of
+     * the activation, turning them into gradients with respect to the linear inputs. The outputs are the
+     * ones cached by the forward pass.
+     */
+    default void ChainDerivative(Tensor linearInputs, Tensor outputs, Tensor gradients) {
+        if (gradients.IsFloat()) {
+            for (int i = 0; i < gradients.getRows(); i++) {
+                for (int j = 0; j < gradients.getCols(); j++) {
+                    gradients.set(i, j, gradients.get(i, j)
+                            * DerivativeFromOutput(linearInputs.get(i, j), outputs.get(i, j)));
+                }
+            }
+            return;
+        }
+        double[] z = linearInputs.getData();
+        double[] y = outputs.getData();
+        double[] g = gradients.getData();
+
+        for (int i = 0; i < gradients.getRows(); i++) {
+            int zRow = linearInputs.Index(i, 0);
+            int yRow = outputs.Index(i, 0);
+            int gRow = gradients.Index(i, 0);
+            for (int j = 0; j < gradients.getCols(); j++) {
+                g[gRow + j] *= DerivativeFromOutput(z[zRow + j], y[yRow + j]);
             }
         }
-        return result;
     }
 }
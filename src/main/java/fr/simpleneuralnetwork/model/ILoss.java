@@ -1,26 +1,76 @@
 package fr.simpleneuralnetwork.model;
 
-import java.util.stream.IntStream;
+import fr.simpleneuralnetwork.utils.Tensor;
 
 public interface ILoss {
 
     double Apply(double output, double expectedOutput);
     double Derivative(double output, double expectedOutput);
     double Loss(double[] output, double[] expectedOutputs);
-    double GlobalLoss(double[][] outputs, double[][] expectedOutputs);
-    String GetName();
 
-    default double[][] DerivativeMatrix(double[][] output, double[][] expectedOutput) {
-        int rows = output.length;
-        int cols = output[0].length;
-        double[][] result = new double[rows][cols];
+    /**
+     * Sum over the rows of the batch of {@link #Loss}, so that summing it over every batch and dividing
+     * by the number of samples gives the average loss of the epoch.
+     */
+    double GlobalLoss(Tensor outputs, Tensor expectedOutputs);
+
+    /**
+     * {@link #GlobalLoss} against class labels: the expected output j of row i is 1 if j is labels[i], 0 otherwise.
+     */
+    default double GlobalLoss(Tensor outputs, int[] labels) {
+        return GlobalLoss(outputs, labels, 0);
+    }
 
-        for (int i = 0; i < rows ; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[i][j] = Derivative(output[i][j], expectedOutput[i][j]);
+    /**
+     * {@link #GlobalLoss(Tensor, int[])} with the label of row i at labels[labelsOffset + i].
+     */
+    default double GlobalLoss(Tensor outputs, int[] labels, int labelsOffset) {
+        double totalError = 0;
+
+        for (int i = 0; i < outputs.getRows(); i++) {
+            int label = labels[labelsOffset + i];
+            for (int j = 0; j < outputs.getCols(); j++) {
+                totalError += Apply(outputs.get(i, j), j == label ? 1 : 0);
             }
         }
 
+        return totalError;
+    }
+
+    String GetName();
+
+    /**
+     * Whether, for an output layer using this activation, the gradient with respect to the linear inputs
+     * simplifies to {@code output - expectedOutput}, so the loss and activation derivatives can be skipped.
+     */
+    default boolean IsFusedWith(IActivation activation) {
+        return false;
+    }
+
+    default Tensor DerivativeMatrix(Tensor output, Tensor expectedOutput) {
+        Tensor result = new Tensor(output.getRows(), output.getCols(), output.getPrecision());
+        DerivativeInto(output, expectedOutput, result);
         return result;
     }
+
+    default void DerivativeInto(Tensor output, Tensor expectedOutput, Tensor result) {
+        for (int i = 0; i < output.getRows(); i++) {
+            for (int j = 0; j < output.getCols(); j++) {
+                result.set(i, j, Derivative(output.get(i, j), expectedOutput.get(i, j)));
+            }
+        }
+    }
+
+    default void DerivativeInto(Tensor output, int[] labels, Tensor result) {
+        DerivativeInto(output, labels, 0, result);
+    }
+
+    default void DerivativeInto(Tensor output, int[] labels, int labelsOffset, Tensor result) {
+        for (int i = 0; i < output.getRows(); i++) {
+            int label = labels[labelsOffset + i];
+            for (int j = 0; j < output.getCols(); j++) {
+                result.set(i, j, Derivative(output.get(i, j), j == label ? 1 : 0));
+            }
+        }
+    }
 }
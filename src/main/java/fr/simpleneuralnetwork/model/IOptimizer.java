@@ -0,0 +1,25 @@
+package fr.simpleneuralnetwork.model;
+
+import fr.simpleneuralnetwork.utils.Tensor;
+
+public interface IOptimizer {
+
+    String GetName();
+
+    /**
+     * Values the optimizer was built with, in the order of its constructor, so it can be saved and rebuilt.
+     */
+    double[] getHyperparameters();
+
+    /**
+     * Number of state tensors the optimizer keeps for each parameter tensor, each shaped like the parameters.
+     */
+    int getStateTensorsNumber();
+
+    /**
+     * Applies one update to the parameters from the gradients summed over datasetSize samples, updates the
+     * state and clears the gradients, in a single pass over the four of them.
+     * The step counts the updates since the start of training, starting at 1.
+     */
+    void Update(Tensor parameters, Tensor gradients, Tensor[] state, double learningRate, int datasetSize, long step);
+}
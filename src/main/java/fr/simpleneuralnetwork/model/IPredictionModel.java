@@ -0,0 +1,45 @@
+package fr.simpleneuralnetwork.model;
+
+import fr.simpleneuralnetwork.utils.Tensor;
+
+import java.io.IOException;
+
+/**
+ * Frozen model that only predicts, and can be shared between threads.
+ */
+public interface IPredictionModel {
+
+    int[] getLayerSizes();
+
+    /**
+     * Outputs of the network for every row of the inputs.
+     */
+    Tensor Forward(Tensor inputs);
+
+    double[] Predict(double[] input);
+    double PredictClass(double[] input);
+    double[][] PredictAll(double[][] inputs);
+    double[] PredictAllClasses(double[][] inputs);
+
+    default int getFeaturesNumber() {
+        return getLayerSizes()[0];
+    }
+
+    /**
+     * Loads a quantized model file as a {@link QuantizedModel}, and any other model file as an {@link InferenceModel}.
+     * Returns null when the file cannot be loaded.
+     */
+    static IPredictionModel LoadFromFile(String filePath) {
+        try {
+            if (ModelFile.IsBinary(filePath) && ModelFile.IsQuantized(filePath)) {
+                return QuantizedModel.LoadFromFile(filePath);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        NeuralNetwork network = NeuralNetwork.LoadFromFile(filePath);
+        return network != null ? network.ToInferenceModel() : null;
+    }
+}
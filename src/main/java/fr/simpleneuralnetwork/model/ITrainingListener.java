@@ -0,0 +1,38 @@
+package fr.simpleneuralnetwork.model;
+
+/**
+ * Receives the metrics of a training run. Every method is called on the training thread, so listeners
+ * should return quickly.
+ */
+public interface ITrainingListener {
+
+    default void OnEpochStart(int epoch, double learningRate) {
+    }
+
+    /**
+     * Called once the weights have been updated with the gradients of a batch.
+     */
+    default void OnBatchEnd(TrainingMetrics metrics) {
+    }
+
+    default void OnEpochEnd(TrainingMetrics metrics) {
+    }
+
+    /**
+     * Called after the validation set has been evaluated at the end of an epoch.
+     */
+    default void OnValidationEnd(TrainingMetrics metrics) {
+    }
+
+    /**
+     * Called when training stops early because the validation loss no longer improves.
+     */
+    default void OnEarlyStop(int epoch, int bestEpoch) {
+    }
+
+    /**
+     * Called once the last epoch of {@link NeuralNetwork#Train} is over, even if it failed.
+     */
+    default void OnTrainingEnd() {
+    }
+}
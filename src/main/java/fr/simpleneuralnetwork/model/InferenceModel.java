@@ -0,0 +1,150 @@
+package fr.simpleneuralnetwork.model;
+
+import fr.simpleneuralnetwork.utils.MathsUtilities;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+
+import java.util.stream.IntStream;
+
+/**
+ * Immutable snapshot of a trained network, for prediction only.
+ * <p>
+ * The layers are private copies that are never modified, and every prediction
+ * allocates its own buffers, so a single instance can be shared by any number of
+ * threads. Training the source network afterwards does not affect the snapshot.
+ */
+public final class InferenceModel implements IPredictionModel {
+
+    public static final int DEFAULT_PREDICTION_BATCH_SIZE = 256;
+
+    private final Layer[] layers;
+    private final int[] layerSizes;
+    private final String loss;
+    private final String hiddenActivation;
+    private final String outputActivation;
+
+    public InferenceModel(NeuralNetwork network) {
+        Layer[] sourceLayers = network.getLayers();
+
+        this.layers = new Layer[sourceLayers.length];
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = sourceLayers[i].Copy();
+        }
+        this.layerSizes = network.getLayerSizes().clone();
+        this.loss = network.getLoss();
+        this.hiddenActivation = network.getHiddenActivation();
+        this.outputActivation = network.getOutputActivation();
+    }
+
+    @Override
+    public int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    public String getLoss() {
+        return loss;
+    }
+
+    public String getHiddenActivation() {
+        return hiddenActivation;
+    }
+
+    public String getOutputActivation() {
+        return outputActivation;
+    }
+
+    public Precision getPrecision() {
+        return layers[0].getPrecision();
+    }
+
+    @Override
+    public Tensor Forward(Tensor inputs) {
+        return Forward(layers, inputs);
+    }
+
+    /**
+     * Inputs in another precision than the layers are converted first.
+     */
+    static Tensor Forward(Layer[] layers, Tensor inputs) {
+        Precision precision = layers[0].getPrecision();
+        Tensor activations = inputs.getPrecision() == precision ? inputs : inputs.Copy(precision);
+
+        for (Layer layer : layers) {
+            activations = layer.ForwardPropagation(activations);
+        }
+        return activations;
+    }
+
+    /**
+     * Runs the batched forward pass over every input, chunkSize rows at a time.
+     * Chunks are independent and are spread across the common fork/join pool.
+     * The outputs are gathered in double precision whatever the precision of the layers.
+     */
+    static Tensor ForwardAll(Layer[] layers, double[][] inputs, int chunkSize) {
+        int outputsNumber = layers[layers.length - 1].getNeuronsNumber();
+        int featuresNumber = layers[0].getFeaturesNumber();
+        Tensor outputs = new Tensor(inputs.length, outputsNumber);
+        int chunksNumber = (inputs.length + chunkSize - 1) / chunkSize;
+
+        IntStream chunks = IntStream.range(0, chunksNumber);
+        if (chunksNumber > 1) {
+            chunks = chunks.parallel();
+        }
+
+        chunks.forEach(chunk -> {
+            int start = chunk * chunkSize;
+            int end = Math.min(start + chunkSize, inputs.length);
+            Tensor chunkInputs = new Tensor(end - start, featuresNumber, layers[0].getPrecision());
+
+            for (int i = start; i < end; i++) {
+                chunkInputs.SetRow(i - start, inputs[i]);
+            }
+            outputs.RowSlice(start, end).CopyRowsFrom(Forward(layers, chunkInputs), 0);
+        });
+
+        return outputs;
+    }
+
+    static double[] OutputClasses(Tensor outputs) {
+        double[] predictions = new double[outputs.getRows()];
+
+        for (int i = 0; i < predictions.length; i++) {
+            predictions[i] = OutputClass(outputs.getData(), outputs.Index(i, 0), outputs.getCols());
+        }
+        return predictions;
+    }
+
+    @Override
+    public double[] Predict(double[] input) {
+        return Forward(Tensor.Wrap(input, 1, input.length)).GetRow(0);
+    }
+
+    @Override
+    public double PredictClass(double[] input) {
+        return OutputClass(Predict(input));
+    }
+
+    @Override
+    public double[][] PredictAll(double[][] inputs) {
+        return ForwardAll(layers, inputs, DEFAULT_PREDICTION_BATCH_SIZE).ToArray();
+    }
+
+    @Override
+    public double[] PredictAllClasses(double[][] inputs) {
+        return OutputClasses(ForwardAll(layers, inputs, DEFAULT_PREDICTION_BATCH_SIZE));
+    }
+
+    public static double OutputClass(double[] outputs) {
+        return OutputClass(outputs, 0, outputs.length);
+    }
+
+    /**
+     * A single output neuron is read as a binary decision, several as a one-hot distribution.
+     */
+    static double OutputClass(double[] outputs, int from, int length) {
+        if (length == 1) {
+            return outputs[from] >= 0.5 ? 0.0 : 1.0;
+        }
+        return MathsUtilities.IndexMaxOfArray(outputs, from, length);
+    }
+}
@@ -4,81 +4,112 @@ import fr.simpleneuralnetwork.model.Activations.ReLU;
 import fr.simpleneuralnetwork.model.Activations.SiLU;
 import fr.simpleneuralnetwork.model.Activations.Sigmoid;
 import fr.simpleneuralnetwork.model.Activations.SoftMax;
-import org.ejml.simple.SimpleMatrix;
+import fr.simpleneuralnetwork.model.Optimizers.SGD;
+import fr.simpleneuralnetwork.utils.Gemm;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
 
-import java.util.Arrays;
 import java.util.Random;
 
 public class Layer {
+    private static final IOptimizer GRADIENT_DESCENT = new SGD();
+
     Random rand = new Random();
 
     private final int featuresNumber;
     private final int neuronsNumber;
 
-    private double[][] activations;
-    private double[][] linearInputs;
-
-    private final double[][] weights;
-    private final double[] biases;
-
-    private double[][] weightsGradients;
-    private double[] biasesGradients;
+    private final Tensor weights; // [neuronsNumber x featuresNumber]
+    private final Tensor biases;  // [1 x neuronsNumber]
 
     private IActivation activationFunction;
 
+    // Optimizer state, shaped like the weights and biases, owned by the last optimizer used.
+    private IOptimizer stateOwner;
+    private Tensor[] weightsState;
+    private Tensor[] biasesState;
+
     public Layer(int nbFeatures, int nbNeurons, String activationFun) {
+        this(nbFeatures, nbNeurons, activationFun, Precision.DOUBLE);
+    }
+
+    public Layer(int nbFeatures, int nbNeurons, String activationFun, Precision precision) {
         this.featuresNumber = nbFeatures;
         this.neuronsNumber = nbNeurons;
         ScanActivationFunction(activationFun);
 
-        weights = new double[neuronsNumber][featuresNumber];
-        biases = new double[neuronsNumber];
-
-        weightsGradients = new double[neuronsNumber][featuresNumber];
-        biasesGradients = new double[neuronsNumber];
+        weights = new Tensor(neuronsNumber, featuresNumber, precision);
+        biases = new Tensor(1, neuronsNumber, precision);
 
         InitWeights();
     }
 
-    public Layer(double[][] initialWeights, double[] initialBiases, int nbFeatures, int nbNeurons, String activationFun) {
+    public Layer(Tensor initialWeights, Tensor initialBiases, int nbFeatures, int nbNeurons, String activationFun) {
         this.featuresNumber = nbFeatures;
         this.neuronsNumber = nbNeurons;
         this.weights = initialWeights;
         this.biases = initialBiases;
         ScanActivationFunction(activationFun);
-
-        weightsGradients = new double[neuronsNumber][featuresNumber];
-        biasesGradients = new double[neuronsNumber];
     }
 
     public void ScanActivationFunction(String activationFun) {
+        activationFunction = NewActivationFunction(activationFun);
+    }
+
+    static IActivation NewActivationFunction(String activationFun) {
         switch(activationFun) {
             case "sigmoid":
-                activationFunction = new Sigmoid();
-                break;
+                return new Sigmoid();
             case "relu":
-                activationFunction = new ReLU();
-                break;
+                return new ReLU();
             case "silu":
-                activationFunction = new SiLU();
-                break;
+                return new SiLU();
             case "softmax":
-                activationFunction = new SoftMax();
-                break;
+                return new SoftMax();
             default:
                 System.err.println("Unknown activation function.");
                 System.exit(-1);
+                return null;
+        }
+    }
+
+    /**
+     * Returns a layer with the same activation and its own copy of the weights and biases.
+     */
+    public Layer Copy() {
+        return new Layer(weights.Copy(), biases.Copy(), featuresNumber, neuronsNumber, activationFunction.GetName());
+    }
+
+    /**
+     * Overwrites the weights and biases of this layer with those of a layer of the same shape.
+     */
+    public void CopyWeightsFrom(Layer other) {
+        if (other.featuresNumber != featuresNumber || other.neuronsNumber != neuronsNumber) {
+            throw new IllegalArgumentException("Cannot copy the weights of a " + other.neuronsNumber + "x"
+                    + other.featuresNumber + " layer into a " + neuronsNumber + "x" + featuresNumber + " layer.");
         }
+        weights.CopyRowsFrom(other.weights, 0);
+        biases.CopyRowsFrom(other.biases, 0);
+    }
+
+    public IActivation getActivationFunction() {
+        return activationFunction;
     }
 
-    public double[][] getWeights() {
+    public Tensor getWeights() {
         return weights;
     }
 
-    public double[] getBiases() {
+    public Tensor getBiases() {
         return biases;
     }
 
+    public Precision getPrecision() {
+        return weights.getPrecision();
+    }
+
     public int getFeaturesNumber() {
         return featuresNumber;
     }
@@ -87,104 +118,174 @@ public class Layer {
         return neuronsNumber;
     }
 
-    public double[][] ForwardPropagation(double[][] inputs) {
-        this.linearInputs = new double[1][neuronsNumber];
-        ComputeMatrixForward(inputs, 1);
+    public Tensor ForwardPropagation(Tensor inputs) {
+        Tensor linearInputs = new Tensor(inputs.getRows(), neuronsNumber, weights.getPrecision());
+        ComputeMatrixForward(inputs, linearInputs);
+        activationFunction.ApplyInto(linearInputs, linearInputs);
 
-        return activationFunction.ApplyMatrix(linearInputs);
+        return linearInputs;
     }
 
-    public double[][] ForwardPropagationBatch(double[][] inputs) {
-        int batchSize = inputs.length;
+    public Tensor ForwardPropagationBatch(Tensor inputs, LayerWorkspace workspace) {
+        // The inputs are the previous layer's outputs, which are not modified until the next forward pass,
+        // so they can be kept by reference for the backward pass.
+        workspace.setInputs(inputs);
 
-        this.activations = new double[batchSize][featuresNumber];
-        this.linearInputs = new double[batchSize][neuronsNumber];
+        ComputeMatrixForward(inputs, workspace.getLinearInputs());
+        activationFunction.ApplyInto(workspace.getLinearInputs(), workspace.getOutputs());
 
-        SaveActivations(inputs, batchSize);
-        ComputeMatrixForward(inputs, batchSize);
+        return workspace.getOutputs();
+    }
 
-        return activationFunction.ApplyMatrix(linearInputs);
+    public void ComputeMatrixForward(Tensor inputs, Tensor result) {
+        Gemm.MultTransB(inputs, weights, biases, result); // [batchSize x neuronsNumber]
     }
 
-    public void SaveActivations(double[][] inputs, int batchSize) {
-        for (int i = 0; i < batchSize; i++) {
-            System.arraycopy(inputs[i], 0, activations[i], 0, featuresNumber);
+    public void InitWeights() {
+        for (int neuron = 0; neuron < neuronsNumber; neuron++) {
+            biases.set(0, neuron, rand.nextDouble() * 2 - 1);
+
+            for (int feature = 0; feature < featuresNumber; feature++) {
+                weights.set(neuron, feature, rand.nextDouble() * 2 - 1);
+            }
         }
     }
 
-    public void ComputeMatrixForward(double[][] inputs, int batchSize) {
-        SimpleMatrix inputMatrix = new SimpleMatrix(inputs);
-        SimpleMatrix weightMatrix = new SimpleMatrix(weights).transpose();
-        SimpleMatrix biasMatrix = new SimpleMatrix(1, biases.length, true, biases);
+    public void UpdateGradients(LayerWorkspace workspace) {
+        Tensor newGradients = workspace.getGradients();
+        Tensor biasesGradients = workspace.getBiasesGradients();
+        Gemm.MultTransA(newGradients, workspace.getInputs(),
+                workspace.getWeightsGradients()); // [neuronsCurrent x featuresCurrent]
 
-        SimpleMatrix extendedBiasMatrix = new SimpleMatrix(batchSize, biases.length);
-        for (int i = 0; i < batchSize; i++) {
-            extendedBiasMatrix.insertIntoThis(i, 0, biasMatrix);
+        biasesGradients.Fill(0);
+        for (int i = 0; i < newGradients.getRows(); i++) {
+            for (int neuron = 0; neuron < neuronsNumber; neuron++) {
+                biasesGradients.set(0, neuron, biasesGradients.get(0, neuron) + newGradients.get(i, neuron));
+            }
         }
+    }
 
-        SimpleMatrix prodMatrix = inputMatrix.mult(weightMatrix);
-        SimpleMatrix linearInputMatrix = prodMatrix.plus(extendedBiasMatrix);
+    public Tensor ComputeOutputGradientsBatch(ILoss lossFunction, Tensor expectedOutputs, LayerWorkspace workspace) {
+        if (lossFunction.IsFusedWith(activationFunction)) {
+            ComputeFusedOutputGradients(expectedOutputs, workspace);
+        } else {
+            lossFunction.DerivativeInto(workspace.getOutputs(), expectedOutputs,
+                    workspace.getGradients()); // [batchSize x neuronsCurrent]
+            MultiplyByDerivatives(workspace);
+        }
+        UpdateGradients(workspace);
 
-        this.linearInputs = linearInputMatrix.getDDRM().get2DData();
+        return workspace.getGradients();
     }
 
-    public void InitWeights() {
-        for (int neuron = 0; neuron < neuronsNumber; neuron++) {
-            biases[neuron] = rand.nextDouble() * 2 - 1;
+    /**
+     * {@link #ComputeOutputGradientsBatch(ILoss, Tensor, LayerWorkspace)} against class labels.
+     */
+    public Tensor ComputeOutputGradientsBatch(ILoss lossFunction, int[] labels, LayerWorkspace workspace) {
+        return ComputeOutputGradientsBatch(lossFunction, labels, 0, workspace);
+    }
 
-            for (int feature = 0; feature < featuresNumber; feature++) {
-                weights[neuron][feature] = rand.nextDouble() * 2 - 1;
+    /**
+     * With the label of row i at labels[labelsOffset + i].
+     */
+    public Tensor ComputeOutputGradientsBatch(ILoss lossFunction, int[] labels, int labelsOffset,
+                                              LayerWorkspace workspace) {
+        if (lossFunction.IsFusedWith(activationFunction)) {
+            ComputeFusedOutputGradients(labels, labelsOffset, workspace);
+        } else {
+            lossFunction.DerivativeInto(workspace.getOutputs(), labels, labelsOffset, workspace.getGradients());
+            MultiplyByDerivatives(workspace);
+        }
+        UpdateGradients(workspace);
+
+        return workspace.getGradients();
+    }
+
+    public Tensor BackPropagationBatch(Layer nextLayer, Tensor nextGradients, LayerWorkspace workspace) {
+        Gemm.Mult(nextGradients, nextLayer.getWeights(), workspace.getGradients()); // [batchSize x neuronsCurrent]
+        MultiplyByDerivatives(workspace);
+        UpdateGradients(workspace);
+
+        return workspace.getGradients();
+    }
+
+    private void ComputeFusedOutputGradients(Tensor expectedOutputs, LayerWorkspace workspace) {
+        Tensor outputs = workspace.getOutputs();
+        Tensor gradients = workspace.getGradients();
+
+        if (Vectorization.Applies(outputs, expectedOutputs, gradients)) {
+            VectorKernels.ScaledDifference(outputs, expectedOutputs, gradients, 1);
+            return;
+        }
+        for (int i = 0; i < gradients.getRows(); i++) {
+            for (int neuron = 0; neuron < neuronsNumber; neuron++) {
+                gradients.set(i, neuron, outputs.get(i, neuron) - expectedOutputs.get(i, neuron));
             }
         }
     }
 
-    public void UpdateGradients(SimpleMatrix newGradientsMatrix) {
-        SimpleMatrix weightsGradientsMatrix = newGradientsMatrix.transpose().mult(new SimpleMatrix(activations)); // [neuronsCurrent * featuresCurrent]
-        weightsGradients = weightsGradientsMatrix.getDDRM().get2DData();
+    // The one-hot row is only 1 at the label, so the outputs are copied and 1 is taken off there.
+    private void ComputeFusedOutputGradients(int[] labels, int labelsOffset, LayerWorkspace workspace) {
+        Tensor gradients = workspace.getGradients();
 
-        double[] tmpArr = new double[newGradientsMatrix.getNumRows()];
-        Arrays.fill(tmpArr, 1.0);
+        gradients.CopyRowsFrom(workspace.getOutputs(), 0);
+        for (int i = 0; i < gradients.getRows(); i++) {
+            int label = labels[labelsOffset + i];
+            if (label >= 0 && label < neuronsNumber) {
+                gradients.set(i, label, gradients.get(i, label) - 1);
+            }
+        }
+    }
 
-        SimpleMatrix biasesGradientsMatrix = newGradientsMatrix.transpose().mult(new SimpleMatrix(newGradientsMatrix.getNumRows(),
-                1, true, tmpArr)
-        ); // [neuronsCurrent * 1]
+    private void MultiplyByDerivatives(LayerWorkspace workspace) {
+        activationFunction.ChainDerivative(workspace.getLinearInputs(), workspace.getOutputs(),
+                workspace.getGradients()); // [batchSize x neuronsCurrent]
+    }
 
-        biasesGradients = biasesGradientsMatrix.getDDRM().getData();
+    /**
+     * Plain gradient descent step, see {@link SGD}.
+     */
+    public void UpdateWeights(double learningRate, int datasetSize, LayerWorkspace workspace) {
+        UpdateWeights(GRADIENT_DESCENT, learningRate, datasetSize, 1, workspace);
     }
 
-    public double[][] ComputeOutputGradientsBatch(double[][] outputs, double[][] expectedOutputs) {
-        SimpleMatrix forwardedDerivatives = new SimpleMatrix(
-                activationFunction.DerivativeMatrix(linearInputs) // [batchSize * neuronsCurrent]
-        );
-        SimpleMatrix lossDerivatives = new SimpleMatrix(
-                NeuralNetwork.getLossFunction().DerivativeMatrix(outputs, expectedOutputs) // [batchSize * neuronsCurrent]
-        );
-        SimpleMatrix newGradientsMatrix = lossDerivatives.elementMult(forwardedDerivatives);
-        UpdateGradients(newGradientsMatrix);
+    /**
+     * Updates the weights and biases with the gradients accumulated in the workspace, then clears them.
+     * The optimizer state is allocated on the first update and kept until another optimizer is used.
+     */
+    public void UpdateWeights(IOptimizer optimizer, double learningRate, int datasetSize, long step,
+                              LayerWorkspace workspace) {
+        if (optimizer != stateOwner) {
+            weightsState = NewState(optimizer, weights);
+            biasesState = NewState(optimizer, biases);
+            stateOwner = optimizer;
+        }
+        optimizer.Update(weights, workspace.getWeightsGradients(), weightsState, learningRate, datasetSize, step);
+        optimizer.Update(biases, workspace.getBiasesGradients(), biasesState, learningRate, datasetSize, step);
+    }
 
-        return newGradientsMatrix.getDDRM().get2DData();
+    /**
+     * Returns the state kept by this optimizer for the weights, or null if it has not updated this layer yet.
+     */
+    Tensor[] getWeightsState(IOptimizer optimizer) {
+        return optimizer == stateOwner ? weightsState : null;
     }
 
-    public double[][] BackPropagationBatch(Layer nextLayer, double[][] nextGradients) {
-        SimpleMatrix forwardedDerivatives = new SimpleMatrix(
-                activationFunction.DerivativeMatrix(linearInputs) // [batchSize * neuronsCurrent]
-        );
-        SimpleMatrix weightsMatrix= new SimpleMatrix(nextLayer.getWeights()); // [neuronsNext x neuronsCurrent]
-        SimpleMatrix nextGradientsMatrix = new SimpleMatrix(nextGradients); // [batchSize * neuronsNext]
-        SimpleMatrix newGradientsMatrix = nextGradientsMatrix.mult(weightsMatrix).elementMult(forwardedDerivatives); // [batchSize * neuronsCurrent]
-        UpdateGradients(newGradientsMatrix);
+    Tensor[] getBiasesState(IOptimizer optimizer) {
+        return optimizer == stateOwner ? biasesState : null;
+    }
 
-        return newGradientsMatrix.getDDRM().get2DData();
+    void setOptimizerState(IOptimizer optimizer, Tensor[] weightsState, Tensor[] biasesState) {
+        this.stateOwner = optimizer;
+        this.weightsState = weightsState;
+        this.biasesState = biasesState;
     }
 
-    public void UpdateWeights(double learningRate, int datasetSize) {
-        for (int neuron = 0; neuron < neuronsNumber; neuron++) {
-            for (int feature = 0; feature < featuresNumber; feature++) {
-                weights[neuron][feature] -= learningRate * weightsGradients[neuron][feature] / datasetSize;
-                weightsGradients[neuron][feature] = 0;
-            }
-            biases[neuron] -= learningRate * biasesGradients[neuron] / datasetSize;
-            biasesGradients[neuron] = 0;
+    private static Tensor[] NewState(IOptimizer optimizer, Tensor parameters) {
+        Tensor[] state = new Tensor[optimizer.getStateTensorsNumber()];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = new Tensor(parameters.getRows(), parameters.getCols(), parameters.getPrecision());
         }
+        return state;
     }
 }
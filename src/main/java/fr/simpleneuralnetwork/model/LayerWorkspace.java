@@ -0,0 +1,92 @@
+package fr.simpleneuralnetwork.model;
+
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+
+/**
+ * Per-batch forward and backward buffers of a layer, allocated once for the
+ * largest batch size and reused for every batch.
+ */
+public class LayerWorkspace {
+
+    private Tensor inputs;             // [batchSize x featuresNumber], owned by the previous layer
+    private final Tensor linearInputs; // [batchSize x neuronsNumber]
+    private final Tensor outputs;      // [batchSize x neuronsNumber]
+    private final Tensor gradients;    // [batchSize x neuronsNumber]
+
+    private final Tensor weightsGradients; // [neuronsNumber x featuresNumber]
+    private final Tensor biasesGradients;  // [1 x neuronsNumber]
+
+    public LayerWorkspace(int maxBatchSize, int featuresNumber, int neuronsNumber, Precision precision) {
+        linearInputs = new Tensor(maxBatchSize, neuronsNumber, precision);
+        outputs = new Tensor(maxBatchSize, neuronsNumber, precision);
+        gradients = new Tensor(maxBatchSize, neuronsNumber, precision);
+
+        weightsGradients = new Tensor(neuronsNumber, featuresNumber, precision);
+        biasesGradients = new Tensor(1, neuronsNumber, precision);
+    }
+
+    public void Resize(int batchSize) {
+        linearInputs.Resize(batchSize);
+        outputs.Resize(batchSize);
+        gradients.Resize(batchSize);
+    }
+
+    public Tensor getInputs() {
+        return inputs;
+    }
+
+    public void setInputs(Tensor inputs) {
+        this.inputs = inputs;
+    }
+
+    public Tensor getLinearInputs() {
+        return linearInputs;
+    }
+
+    public Tensor getOutputs() {
+        return outputs;
+    }
+
+    public Tensor getGradients() {
+        return gradients;
+    }
+
+    public Tensor getWeightsGradients() {
+        return weightsGradients;
+    }
+
+    public Tensor getBiasesGradients() {
+        return biasesGradients;
+    }
+
+    /**
+     * Adds the parameter gradients of another workspace to these ones, restricted to the
+     * fraction [part / partsNumber, (part + 1) / partsNumber[ of each gradient tensor.
+     */
+    public void AddGradients(LayerWorkspace other, int part, int partsNumber) {
+        AddRange(other.weightsGradients, weightsGradients, part, partsNumber);
+        AddRange(other.biasesGradients, biasesGradients, part, partsNumber);
+    }
+
+    private static void AddRange(Tensor source, Tensor destination, int part, int partsNumber) {
+        int length = destination.getRows() * destination.getCols();
+        int from = (int) ((long) length * part / partsNumber);
+        int to = (int) ((long) length * (part + 1) / partsNumber);
+
+        if (destination.IsFloat()) {
+            float[] sourceData = source.getFloatData();
+            float[] destinationData = destination.getFloatData();
+            for (int i = from; i < to; i++) {
+                destinationData[i] += sourceData[i];
+            }
+            return;
+        }
+
+        double[] sourceData = source.getData();
+        double[] destinationData = destination.getData();
+        for (int i = from; i < to; i++) {
+            destinationData[i] += sourceData[i];
+        }
+    }
+}
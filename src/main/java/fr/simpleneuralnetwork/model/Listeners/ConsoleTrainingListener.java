@@ -0,0 +1,26 @@
+package fr.simpleneuralnetwork.model.Listeners;
+
+import fr.simpleneuralnetwork.model.ITrainingListener;
+import fr.simpleneuralnetwork.model.TrainingMetrics;
+
+/**
+ * Prints the loss and accuracy of each epoch and validation on the standard output.
+ */
+public class ConsoleTrainingListener implements ITrainingListener {
+
+    @Override
+    public void OnEpochEnd(TrainingMetrics metrics) {
+        System.out.printf("Epoch %d - Loss: %.6f - Accuracy: %.2f%%%n",
+                metrics.getEpoch(), metrics.getLoss(), metrics.getAccuracy());
+    }
+
+    @Override
+    public void OnValidationEnd(TrainingMetrics metrics) {
+        System.out.printf("Validation - Loss: %.6f - Accuracy: %.2f%%%n", metrics.getLoss(), metrics.getAccuracy());
+    }
+
+    @Override
+    public void OnEarlyStop(int epoch, int bestEpoch) {
+        System.out.println("Early stopping after epoch " + epoch + ", the best epoch was " + bestEpoch + ".");
+    }
+}
@@ -0,0 +1,106 @@
+package fr.simpleneuralnetwork.model.Listeners;
+
+import fr.simpleneuralnetwork.model.ITrainingListener;
+import fr.simpleneuralnetwork.model.TrainingMetrics;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * Writes one CSV line per epoch, per validation and, optionally, per batch. Times are in milliseconds.
+ * The batch column is empty on the lines of whole epochs and holds "validation" on the lines of validations.
+ */
+public class CsvTrainingListener implements ITrainingListener, AutoCloseable {
+
+    private static final String HEADER = "epoch,batch,samples,learning_rate,loss,accuracy,samples_per_second,"
+            + "duration_ms,data_load_ms,forward_ms,backward_ms,update_ms,allocated_bytes";
+
+    private final BufferedWriter writer;
+    private final boolean batches;
+
+    public CsvTrainingListener(String filePath) throws IOException {
+        this(filePath, false);
+    }
+
+    public CsvTrainingListener(String filePath, boolean batches) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(filePath));
+        this.batches = batches;
+        writer.write(HEADER);
+        writer.newLine();
+    }
+
+    @Override
+    public void OnBatchEnd(TrainingMetrics metrics) {
+        if (batches) {
+            WriteLine(metrics);
+        }
+    }
+
+    /**
+     * Flushes at the end of each epoch, so the file can be followed while training.
+     */
+    @Override
+    public void OnEpochEnd(TrainingMetrics metrics) {
+        WriteLine(metrics);
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void OnValidationEnd(TrainingMetrics metrics) {
+        WriteLine(metrics);
+    }
+
+    /**
+     * Only flushes, so the listener can follow further trainings. Closing is left to {@link #close()}.
+     */
+    @Override
+    public void OnTrainingEnd() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void WriteLine(TrainingMetrics metrics) {
+        try {
+            writer.write(String.format(Locale.ROOT, "%d,%s,%d,%s,%.6f,%.4f,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%d",
+                    metrics.getEpoch(), BatchColumn(metrics),
+                    metrics.getSamplesNumber(), metrics.getLearningRate(), metrics.getLoss(),
+                    metrics.getAccuracy(), metrics.getSamplesPerSecond(), Millis(metrics.getDurationNanos()),
+                    Millis(metrics.getDataLoadNanos()), Millis(metrics.getForwardNanos()),
+                    Millis(metrics.getBackwardNanos()), Millis(metrics.getUpdateNanos()),
+                    metrics.getAllocatedBytes()));
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String BatchColumn(TrainingMetrics metrics) {
+        if (metrics.IsValidation()) {
+            return "validation";
+        }
+        return metrics.IsEpoch() ? "" : String.valueOf(metrics.getBatch());
+    }
+
+    private static double Millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,52 @@
+package fr.simpleneuralnetwork.model.Listeners;
+
+import fr.simpleneuralnetwork.model.ITrainingListener;
+import fr.simpleneuralnetwork.model.TrainingMetrics;
+
+/**
+ * Emits the metrics as JDK Flight Recorder events, {@code fr.simpleneuralnetwork.TrainingBatch},
+ * {@code fr.simpleneuralnetwork.TrainingEpoch} and {@code fr.simpleneuralnetwork.TrainingValidation}, so they show up in a recording next to the GC and
+ * allocation events. The events are only filled when a recording enables them.
+ */
+public class JfrTrainingListener implements ITrainingListener {
+
+    private TrainingEpochEvent epochEvent;
+
+    @Override
+    public void OnEpochStart(int epoch, double learningRate) {
+        epochEvent = new TrainingEpochEvent();
+        epochEvent.begin();
+    }
+
+    @Override
+    public void OnBatchEnd(TrainingMetrics metrics) {
+        TrainingBatchEvent event = new TrainingBatchEvent();
+        if (event.shouldCommit()) {
+            event.Fill(metrics);
+            event.batch = metrics.getBatch();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void OnEpochEnd(TrainingMetrics metrics) {
+        if (epochEvent == null) {
+            return;
+        }
+        epochEvent.end();
+        if (epochEvent.shouldCommit()) {
+            epochEvent.Fill(metrics);
+            epochEvent.commit();
+        }
+        epochEvent = null;
+    }
+
+    @Override
+    public void OnValidationEnd(TrainingMetrics metrics) {
+        TrainingValidationEvent event = new TrainingValidationEvent();
+        if (event.shouldCommit()) {
+            event.Fill(metrics);
+            event.commit();
+        }
+    }
+}
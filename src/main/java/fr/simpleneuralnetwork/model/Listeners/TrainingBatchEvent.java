@@ -0,0 +1,14 @@
+package fr.simpleneuralnetwork.model.Listeners;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.simpleneuralnetwork.TrainingBatch")
+@Label("Training Batch")
+@Description("Forward pass, backward pass and weight update of one mini-batch")
+class TrainingBatchEvent extends TrainingEvent {
+
+    @Label("Batch")
+    int batch;
+}
@@ -0,0 +1,11 @@
+package fr.simpleneuralnetwork.model.Listeners;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.simpleneuralnetwork.TrainingEpoch")
+@Label("Training Epoch")
+@Description("One pass over the training set")
+class TrainingEpochEvent extends TrainingEvent {
+}
@@ -0,0 +1,76 @@
+package fr.simpleneuralnetwork.model.Listeners;
+
+import fr.simpleneuralnetwork.model.TrainingMetrics;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Fields shared by the JFR events of a batch and of an epoch.
+ */
+@Category({"SimpleNeuralNetwork", "Training"})
+@StackTrace(false)
+abstract class TrainingEvent extends Event {
+
+    @Label("Epoch")
+    int epoch;
+
+    @Label("Samples")
+    int samples;
+
+    @Label("Learning Rate")
+    double learningRate;
+
+    @Label("Loss")
+    double loss;
+
+    @Label("Accuracy")
+    @Percentage
+    double accuracy;
+
+    @Label("Samples per Second")
+    double samplesPerSecond;
+
+    @Label("Training Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long trainingTime;
+
+    @Label("Data Load Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long dataLoadTime;
+
+    @Label("Forward Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long forwardTime;
+
+    @Label("Backward Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long backwardTime;
+
+    @Label("Update Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long updateTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    void Fill(TrainingMetrics metrics) {
+        epoch = metrics.getEpoch();
+        samples = metrics.getSamplesNumber();
+        learningRate = metrics.getLearningRate();
+        loss = metrics.getLoss();
+        accuracy = metrics.getAccuracy() / 100;
+        samplesPerSecond = metrics.getSamplesPerSecond();
+        trainingTime = metrics.getDurationNanos();
+        dataLoadTime = metrics.getDataLoadNanos();
+        forwardTime = metrics.getForwardNanos();
+        backwardTime = metrics.getBackwardNanos();
+        updateTime = metrics.getUpdateNanos();
+        allocated = metrics.getAllocatedBytes();
+    }
+}
@@ -0,0 +1,11 @@
+package fr.simpleneuralnetwork.model.Listeners;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.simpleneuralnetwork.TrainingValidation")
+@Label("Training Validation")
+@Description("Evaluation of the validation set after an epoch")
+class TrainingValidationEvent extends TrainingEvent {
+}
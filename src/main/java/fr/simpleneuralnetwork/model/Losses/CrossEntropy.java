@@ -1,6 +1,11 @@
 package fr.simpleneuralnetwork.model.Losses;
 
+import fr.simpleneuralnetwork.model.IActivation;
 import fr.simpleneuralnetwork.model.ILoss;
+import fr.simpleneuralnetwork.model.Activations.SoftMax;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
 
 public class CrossEntropy implements ILoss {
 
@@ -31,16 +36,47 @@ public class CrossEntropy implements ILoss {
     }
 
     @Override
-    public double GlobalLoss(double[][] outputs, double[][] expectedOutputs) {
+    public double GlobalLoss(Tensor outputs, Tensor expectedOutputs) {
+        if (Vectorization.Applies(outputs, expectedOutputs)) {
+            return VectorKernels.CrossEntropy(outputs, expectedOutputs, EPSILON);
+        }
+        double totalError = 0;
+
+        for (int i = 0; i < outputs.getRows(); i++) {
+            for (int j = 0; j < outputs.getCols(); j++) {
+                totalError += Apply(outputs.get(i, j), expectedOutputs.get(i, j));
+            }
+        }
+
+        return totalError;
+    }
+
+    /**
+     * Sparse categorical cross-entropy: only the output of the expected class has a non-zero term,
+     * so a row costs one logarithm whatever the number of classes.
+     */
+    @Override
+    public double GlobalLoss(Tensor outputs, int[] labels, int labelsOffset) {
         double totalError = 0;
 
-        for (int i = 0; i < outputs.length; i++) {
-            totalError += Loss(outputs[i], expectedOutputs[i]);
+        for (int i = 0; i < outputs.getRows(); i++) {
+            int label = labels[labelsOffset + i];
+            if (label >= 0 && label < outputs.getCols()) {
+                totalError += Apply(outputs.get(i, label), 1);
+            }
         }
 
         return totalError;
     }
 
+    /**
+     * With a softmax output and one-hot expected outputs, dL/dz = softmax(z) - expected.
+     */
+    @Override
+    public boolean IsFusedWith(IActivation activation) {
+        return activation instanceof SoftMax;
+    }
+
     @Override
     public String GetName() {
         return "cross_entropy";
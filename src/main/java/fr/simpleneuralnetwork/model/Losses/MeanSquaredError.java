@@ -1,6 +1,9 @@
 package fr.simpleneuralnetwork.model.Losses;
 
 import fr.simpleneuralnetwork.model.ILoss;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
 
 public class MeanSquaredError implements ILoss {
 
@@ -27,14 +30,28 @@ public class MeanSquaredError implements ILoss {
     }
 
     @Override
-    public double GlobalLoss(double[][] outputs, double[][] expectedOutputs) {
+    public double GlobalLoss(Tensor outputs, Tensor expectedOutputs) {
+        if (Vectorization.Applies(outputs, expectedOutputs)) {
+            return VectorKernels.SquaredError(outputs, expectedOutputs);
+        }
         double totalError = 0;
 
-        for (int i = 0; i < outputs.length; i++) {
-            totalError += Loss(outputs[i], expectedOutputs[i]);
+        for (int i = 0; i < outputs.getRows(); i++) {
+            for (int j = 0; j < outputs.getCols(); j++) {
+                totalError += Apply(outputs.get(i, j), expectedOutputs.get(i, j));
+            }
         }
 
-        return totalError / outputs.length;
+        return totalError;
+    }
+
+    @Override
+    public void DerivativeInto(Tensor output, Tensor expectedOutput, Tensor result) {
+        if (Vectorization.Applies(output, expectedOutput, result)) {
+            VectorKernels.ScaledDifference(output, expectedOutput, result, 2);
+        } else {
+            ILoss.super.DerivativeInto(output, expectedOutput, result);
+        }
     }
 
     @Override
@@ -0,0 +1,331 @@
+package fr.simpleneuralnetwork.model;
+
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.QuantizedTensor;
+import fr.simpleneuralnetwork.utils.Tensor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary model format, little-endian:
+ * <pre>
+ * [type]          [value]          [description]
+ * 32-bit integer  0x424E4E53       magic number ("SNNB")
+ * 32-bit integer  2                format version
+ * 32-bit integer  8                bytes per weight: 8 for doubles, 4 for floats, 1 for quantized weights
+ *                                  (absent in version 1, always doubles)
+ * string          cross_entropy    loss (32-bit length, then UTF-8 bytes)
+ * string          sigmoid          hidden activation
+ * string          softmax          output activation
+ * 32-bit integer  3                number of layer sizes
+ * 32-bit integer  784 100 10       layer sizes
+ * padding                          up to the next multiple of 8 bytes
+ * double or float ...              for each layer, its weights [neurons x features] row by row, then its biases
+ * </pre>
+ * Weight blocks are read through a memory-mapped view of the file, so loading is a bulk copy.
+ * A network is loaded back in the precision it was saved in.
+ * <p>
+ * A {@link QuantizedModel} has the same header with 1 byte per weight, then for each layer:
+ * <pre>
+ * float           ...              scale of each neuron's weights
+ * float           ...              biases
+ * 8-bit integer   ...              weights [neurons x features] row by row
+ * padding                          up to the next multiple of 8 bytes
+ * </pre>
+ */
+final class ModelFile {
+
+    static final int MAGIC = 0x424E4E53;
+    static final int VERSION = 2;
+    static final int QUANTIZED_BYTES = 1;
+
+    private ModelFile() {
+    }
+
+    static boolean IsBinary(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            return channel.read(magic, 0) == Integer.BYTES && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Whether the binary model file holds quantized weights.
+     */
+    static boolean IsQuantized(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            return channel.read(header, 0) == header.capacity() && header.getInt(Integer.BYTES) >= 2
+                    && header.getInt(2 * Integer.BYTES) == QUANTIZED_BYTES;
+        }
+    }
+
+    static void Write(NeuralNetwork network, String filePath) throws IOException {
+        Layer[] layers = network.getLayers();
+        Tensor[] weights = new Tensor[layers.length];
+        Tensor[] biases = new Tensor[layers.length];
+        for (int l = 0; l < layers.length; l++) {
+            weights[l] = layers[l].getWeights();
+            biases[l] = layers[l].getBiases();
+        }
+
+        try (FileChannel channel = Open(filePath)) {
+            Write(channel, network, weights, biases);
+        }
+    }
+
+    static FileChannel Open(String filePath) throws IOException {
+        return FileChannel.open(Path.of(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Writes the header of the network followed by the given weights and biases, which may be copies of its own,
+     * and returns the position of the end of the model.
+     */
+    static long Write(FileChannel channel, NeuralNetwork network, Tensor[] weights, Tensor[] biases) throws IOException {
+        ByteBuffer header = WriteHeader(network, network.getPrecision().getBytes());
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        long position = header.limit();
+        for (int l = 0; l < weights.length; l++) {
+            position = WriteTensors(channel, position, weights[l], biases[l]);
+        }
+        return position;
+    }
+
+    /**
+     * Writes the tensors one after the other at the given position, and returns the position after them.
+     */
+    static long WriteTensors(FileChannel channel, long position, Tensor... tensors) throws IOException {
+        long bytes = 0;
+        for (Tensor tensor : tensors) {
+            bytes += (long) tensor.getRows() * tensor.getCols() * tensor.getPrecision().getBytes();
+        }
+        MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+        block.order(ByteOrder.LITTLE_ENDIAN);
+
+        for (Tensor tensor : tensors) {
+            PutTensor(block, tensor);
+        }
+        block.force();
+        return position + bytes;
+    }
+
+    /**
+     * Position of the end of the model saved by {@link #Write} for this network.
+     */
+    static long ModelBytes(NeuralNetwork network) {
+        long position = WriteHeader(network, network.getPrecision().getBytes()).limit();
+        int[] layerSizes = network.getLayerSizes();
+
+        for (int l = 0; l < layerSizes.length - 1; l++) {
+            position += LayerBytes(layerSizes[l], layerSizes[l + 1], network.getPrecision());
+        }
+        return position;
+    }
+
+    static NeuralNetwork Read(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, Integer.MAX_VALUE));
+            header.order(ByteOrder.LITTLE_ENDIAN);
+
+            int bytesPerWeight = ReadVersion(header, filePath);
+            if (bytesPerWeight == QUANTIZED_BYTES) {
+                throw new IOException(filePath + " holds quantized weights, load it with QuantizedModel.LoadFromFile.");
+            }
+            Precision precision = Precision.FromBytes(bytesPerWeight);
+
+            String loss = GetString(header);
+            String hiddenActivation = GetString(header);
+            String outputActivation = GetString(header);
+            int[] layerSizes = ReadLayerSizes(header);
+
+            Tensor[] weights = new Tensor[layerSizes.length - 1];
+            Tensor[] biases = new Tensor[layerSizes.length - 1];
+            long position = Align(header.position());
+
+            for (int l = 0; l < weights.length; l++) {
+                long bytes = LayerBytes(layerSizes[l], layerSizes[l + 1], precision);
+                if (position + bytes > fileSize) {
+                    throw new IOException("Truncated model file " + filePath + ".");
+                }
+
+                MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+                block.order(ByteOrder.LITTLE_ENDIAN);
+
+                weights[l] = new Tensor(layerSizes[l + 1], layerSizes[l], precision);
+                biases[l] = new Tensor(1, layerSizes[l + 1], precision);
+                if (precision == Precision.FLOAT) {
+                    block.asFloatBuffer().get(weights[l].getFloatData()).get(biases[l].getFloatData());
+                } else {
+                    block.asDoubleBuffer().get(weights[l].getData()).get(biases[l].getData());
+                }
+                position += bytes;
+            }
+
+            return new NeuralNetwork(weights, biases, layerSizes, loss, hiddenActivation, outputActivation);
+        }
+    }
+
+    static void WriteQuantized(QuantizedModel model, String filePath) throws IOException {
+        QuantizedTensor[] weights = model.getWeights();
+        Tensor[] biases = model.getBiases();
+
+        try (FileChannel channel = Open(filePath)) {
+            ByteBuffer header = WriteHeader(model.getLoss(), model.getHiddenActivation(), model.getOutputActivation(),
+                    model.getLayerSizes(), QUANTIZED_BYTES);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            long position = header.limit();
+            for (int l = 0; l < weights.length; l++) {
+                long bytes = QuantizedLayerBytes(weights[l].getCols(), weights[l].getRows());
+                MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+                block.order(ByteOrder.LITTLE_ENDIAN);
+
+                block.asFloatBuffer().put(weights[l].getScales(), 0, weights[l].getRows())
+                        .put(biases[l].getFloatData(), biases[l].Index(0, 0), biases[l].getCols());
+                block.position(2 * weights[l].getRows() * Float.BYTES);
+                block.put(weights[l].getData(), 0, weights[l].getRows() * weights[l].getCols());
+                block.force();
+                position += bytes;
+            }
+        }
+    }
+
+    static QuantizedModel ReadQuantized(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, Integer.MAX_VALUE));
+            header.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (ReadVersion(header, filePath) != QUANTIZED_BYTES) {
+                throw new IOException(filePath + " does not hold quantized weights.");
+            }
+
+            String loss = GetString(header);
+            String hiddenActivation = GetString(header);
+            String outputActivation = GetString(header);
+            int[] layerSizes = ReadLayerSizes(header);
+
+            QuantizedTensor[] weights = new QuantizedTensor[layerSizes.length - 1];
+            Tensor[] biases = new Tensor[layerSizes.length - 1];
+            long position = Align(header.position());
+
+            for (int l = 0; l < weights.length; l++) {
+                long bytes = QuantizedLayerBytes(layerSizes[l], layerSizes[l + 1]);
+                if (position + bytes > fileSize) {
+                    throw new IOException("Truncated model file " + filePath + ".");
+                }
+
+                MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+                block.order(ByteOrder.LITTLE_ENDIAN);
+
+                weights[l] = new QuantizedTensor(layerSizes[l + 1], layerSizes[l]);
+                biases[l] = new Tensor(1, layerSizes[l + 1], Precision.FLOAT);
+                block.asFloatBuffer().get(weights[l].getScales()).get(biases[l].getFloatData());
+                block.position(2 * layerSizes[l + 1] * Float.BYTES);
+                block.get(weights[l].getData());
+                position += bytes;
+            }
+
+            return new QuantizedModel(weights, biases, layerSizes, loss, hiddenActivation, outputActivation);
+        }
+    }
+
+    /**
+     * Checks the magic number and version, and returns the number of bytes per weight.
+     */
+    private static int ReadVersion(ByteBuffer header, String filePath) throws IOException {
+        if (header.getInt() != MAGIC) {
+            throw new IOException(filePath + " is not a binary model file.");
+        }
+        int version = header.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported model file version " + version + " in " + filePath + ".");
+        }
+        return version == 1 ? Double.BYTES : header.getInt();
+    }
+
+    private static int[] ReadLayerSizes(ByteBuffer header) {
+        int[] layerSizes = new int[header.getInt()];
+        for (int i = 0; i < layerSizes.length; i++) {
+            layerSizes[i] = header.getInt();
+        }
+        return layerSizes;
+    }
+
+    private static ByteBuffer WriteHeader(NeuralNetwork network, int bytesPerWeight) {
+        return WriteHeader(network.getLoss(), network.getHiddenActivation(), network.getOutputActivation(),
+                network.getLayerSizes(), bytesPerWeight);
+    }
+
+    private static ByteBuffer WriteHeader(String loss, String hiddenActivation, String outputActivation,
+                                          int[] layerSizes, int bytesPerWeight) {
+        byte[][] names = {
+                loss.getBytes(StandardCharsets.UTF_8),
+                hiddenActivation.getBytes(StandardCharsets.UTF_8),
+                outputActivation.getBytes(StandardCharsets.UTF_8)
+        };
+
+        int size = 4 * Integer.BYTES + layerSizes.length * Integer.BYTES;
+        for (byte[] name : names) {
+            size += Integer.BYTES + name.length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate((int) Align(size)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(bytesPerWeight);
+        for (byte[] name : names) {
+            header.putInt(name.length).put(name);
+        }
+        header.putInt(layerSizes.length);
+        for (int layerSize : layerSizes) {
+            header.putInt(layerSize);
+        }
+
+        return header.rewind();
+    }
+
+    static String GetString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void PutTensor(ByteBuffer buffer, Tensor tensor) {
+        for (int i = 0; i < tensor.getRows(); i++) {
+            if (tensor.IsFloat()) {
+                buffer.asFloatBuffer().put(tensor.getFloatData(), tensor.Index(i, 0), tensor.getCols());
+            } else {
+                buffer.asDoubleBuffer().put(tensor.getData(), tensor.Index(i, 0), tensor.getCols());
+            }
+            buffer.position(buffer.position() + tensor.getCols() * tensor.getPrecision().getBytes());
+        }
+    }
+
+    private static long LayerBytes(int featuresNumber, int neuronsNumber, Precision precision) {
+        return (long) neuronsNumber * (featuresNumber + 1) * precision.getBytes();
+    }
+
+    private static long QuantizedLayerBytes(int featuresNumber, int neuronsNumber) {
+        return Align(2L * neuronsNumber * Float.BYTES + (long) neuronsNumber * featuresNumber);
+    }
+
+    static long Align(long position) {
+        return (position + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+    }
+}
@@ -1,27 +1,96 @@
 package fr.simpleneuralnetwork.model;
 
+import fr.simpleneuralnetwork.data.Batch;
+import fr.simpleneuralnetwork.data.DatasetRange;
+import fr.simpleneuralnetwork.data.IBatchSource;
+import fr.simpleneuralnetwork.data.IDataset;
+import fr.simpleneuralnetwork.data.PrefetchBatchSource;
+import fr.simpleneuralnetwork.data.TensorDataset;
+import fr.simpleneuralnetwork.model.Listeners.ConsoleTrainingListener;
 import fr.simpleneuralnetwork.model.Losses.CrossEntropy;
 import fr.simpleneuralnetwork.model.Losses.MeanSquaredError;
+import fr.simpleneuralnetwork.model.Optimizers.Adam;
+import fr.simpleneuralnetwork.model.Optimizers.Momentum;
+import fr.simpleneuralnetwork.model.Optimizers.RMSProp;
+import fr.simpleneuralnetwork.model.Optimizers.SGD;
+import fr.simpleneuralnetwork.utils.Allocations;
 import fr.simpleneuralnetwork.utils.MathsUtilities;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 
 public class NeuralNetwork {
 
     private final Layer[] layers;
-    private static ILoss lossFunction;
+    private ILoss lossFunction;
     private final int[] layerSizes;
     private final String loss;
     private final String hiddenActivation;
     private final String outputActivation;
+    private final Precision precision;
+
+    private IOptimizer optimizer = new SGD();
+    private long updatesNumber = 0;
+    private int predictionBatchSize = InferenceModel.DEFAULT_PREDICTION_BATCH_SIZE;
+    private boolean shuffle = false;
+    private long seed = 0;
+    private int threadsNumber = 1;
+    private IDataset validationDataset;
+    private double validationSplit = 0;
+    private int validationInterval = 1;
+    private int patience = 0;
+    private double minDelta = 0;
+    private boolean restoreBestWeights = true;
+    private String bestWeightsFile;
+    private Layer[] bestLayers;
+    private double bestValidationLoss = Double.NaN;
+    private int bestEpoch = -1;
+    private int validationsWithoutImprovement = 0;
+    private String checkpointFile;
+    private int checkpointInterval = 1;
+    private Checkpoint checkpoint;
+    private ExecutorService checkpointWriter;
+    private Future<?> pendingCheckpoint;
+    private int resumeEpoch = -1;
+    private double resumeLearningRate;
+    private double resumeInitialLearningRate;
+    private double resumeDecay;
+    private ForkJoinPool pool;
+    private TrainingWorkspace[] workspaces;
+    private double[] shardLosses;
+    private int[] shardCorrect;
+    private long[] shardDataLoadNanos;
+    private long[] shardForwardNanos;
+    private long[] shardBackwardNanos;
+    private long reduceNanos;
+    private final List<ITrainingListener> listeners = new ArrayList<>(List.of(new ConsoleTrainingListener()));
 
     public NeuralNetwork(int[] layerSizes, String loss, String hiddenActivation, String outputActivation) {
+        this(layerSizes, loss, hiddenActivation, outputActivation, Precision.DOUBLE);
+    }
+
+    /**
+     * Creates a network whose weights, training buffers and batches are all stored and computed in the
+     * given precision. Single precision halves the memory traffic at the cost of about 7 significant digits.
+     */
+    public NeuralNetwork(int[] layerSizes, String loss, String hiddenActivation, String outputActivation,
+                         Precision precision) {
         this.layerSizes = layerSizes;
         this.loss = loss;
         this.hiddenActivation = hiddenActivation;
         this.outputActivation = outputActivation;
+        this.precision = precision;
 
         layers = new Layer[layerSizes.length - 1];
         ScanLossFunction(loss);
@@ -30,10 +99,38 @@ public class NeuralNetwork {
 
     public NeuralNetwork(double[][][] initialWeights, double[][] initialBiases, int[] layerSizes,
                          String loss, String hiddenActivation, String outputActivation) {
+        this(WeightsToTensors(initialWeights), BiasesToTensors(initialBiases), layerSizes,
+                loss, hiddenActivation, outputActivation);
+    }
+
+    private static Tensor[] WeightsToTensors(double[][][] weights) {
+        Tensor[] tensors = new Tensor[weights.length];
+
+        for (int i = 0; i < weights.length; i++) {
+            tensors[i] = Tensor.FromArray(weights[i]);
+        }
+        return tensors;
+    }
+
+    private static Tensor[] BiasesToTensors(double[][] biases) {
+        Tensor[] tensors = new Tensor[biases.length];
+
+        for (int i = 0; i < biases.length; i++) {
+            tensors[i] = Tensor.FromArray(new double[][]{biases[i]});
+        }
+        return tensors;
+    }
+
+    /**
+     * The network takes the precision of the given weights.
+     */
+    public NeuralNetwork(Tensor[] initialWeights, Tensor[] initialBiases, int[] layerSizes,
+                         String loss, String hiddenActivation, String outputActivation) {
         this.layerSizes = layerSizes;
         this.loss = loss;
         this.hiddenActivation = hiddenActivation;
         this.outputActivation = outputActivation;
+        this.precision = initialWeights[0].getPrecision();
 
         layers = new Layer[layerSizes.length - 1];
         ScanLossFunction(loss);
@@ -54,6 +151,29 @@ public class NeuralNetwork {
         }
     }
 
+    /**
+     * Selects an optimizer with its default hyperparameters: "sgd", "momentum", "rmsprop" or "adam".
+     */
+    public void ScanOptimizer(String optimizerName) {
+        switch(optimizerName) {
+            case "sgd":
+                setOptimizer(new SGD());
+                break;
+            case "momentum":
+                setOptimizer(new Momentum());
+                break;
+            case "rmsprop":
+                setOptimizer(new RMSProp());
+                break;
+            case "adam":
+                setOptimizer(new Adam());
+                break;
+            default:
+                System.err.println("Unknown optimizer.");
+                System.exit(-1);
+        }
+    }
+
     public int[] getLayerSizes() {
         return layerSizes;
     }
@@ -70,11 +190,271 @@ public class NeuralNetwork {
         return outputActivation;
     }
 
-    public static ILoss getLossFunction() {
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    public IOptimizer getOptimizer() {
+        return optimizer;
+    }
+
+    /**
+     * Sets the optimizer used by the next updates. Its state starts from zero, as does the step count
+     * used by the bias correction of Adam.
+     */
+    public void setOptimizer(IOptimizer optimizer) {
+        this.optimizer = optimizer;
+        this.updatesNumber = 0;
+    }
+
+    public int getPredictionBatchSize() {
+        return predictionBatchSize;
+    }
+
+    /**
+     * Sets how many rows PredictAll and PredictAllClasses push through each batched forward pass.
+     */
+    public void setPredictionBatchSize(int predictionBatchSize) {
+        if (predictionBatchSize < 1) {
+            throw new IllegalArgumentException("The prediction batch size must be at least 1.");
+        }
+        this.predictionBatchSize = predictionBatchSize;
+    }
+
+    public boolean IsShuffling() {
+        return shuffle;
+    }
+
+    /**
+     * Visits the training samples in a new random order at each epoch. The order only depends on
+     * the seed and the epoch number, so a run can be reproduced.
+     */
+    public void setShuffle(boolean shuffle) {
+        this.shuffle = shuffle;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getThreadsNumber() {
+        return threadsNumber;
+    }
+
+    /**
+     * Sets the number of shards each mini-batch is split into, each trained on its own thread.
+     * Shard gradients are always summed in shard order, so a given thread count gives reproducible results.
+     */
+    public void setThreadsNumber(int threadsNumber) {
+        if (threadsNumber < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.threadsNumber = threadsNumber;
+        this.workspaces = null;
+    }
+
+    /**
+     * Returns the listeners notified during training. A {@link ConsoleTrainingListener} is registered by default.
+     */
+    public List<ITrainingListener> getTrainingListeners() {
+        return List.copyOf(listeners);
+    }
+
+    public void AddTrainingListener(ITrainingListener listener) {
+        listeners.add(listener);
+    }
+
+    public void RemoveTrainingListener(ITrainingListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void ClearTrainingListeners() {
+        listeners.clear();
+    }
+
+    public IDataset getValidationDataset() {
+        return validationDataset;
+    }
+
+    /**
+     * Evaluates this dataset during training, every {@link #setValidationInterval validation interval} epochs.
+     * Training on an {@link IDataset} with a validation split uses the held out samples instead.
+     */
+    public void setValidationDataset(IDataset validationDataset) {
+        this.validationDataset = validationDataset;
+    }
+
+    public double getValidationSplit() {
+        return validationSplit;
+    }
+
+    /**
+     * Holds out this fraction of the samples, taken at the end of the dataset, to validate the network
+     * when training on an {@link IDataset} or on arrays.
+     */
+    public void setValidationSplit(double validationSplit) {
+        if (validationSplit < 0 || validationSplit >= 1) {
+            throw new IllegalArgumentException("The validation split must be in [0, 1[.");
+        }
+        this.validationSplit = validationSplit;
+    }
+
+    public int getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(int validationInterval) {
+        if (validationInterval < 1) {
+            throw new IllegalArgumentException("The validation interval must be at least 1.");
+        }
+        this.validationInterval = validationInterval;
+    }
+
+    public int getPatience() {
+        return patience;
+    }
+
+    /**
+     * Stops training once the validation loss has not improved by more than minDelta for this many
+     * validations in a row. A patience of 0 never stops early.
+     */
+    public void setEarlyStopping(int patience, double minDelta) {
+        if (patience < 0 || minDelta < 0) {
+            throw new IllegalArgumentException("The patience and the minimum improvement cannot be negative.");
+        }
+        this.patience = patience;
+        this.minDelta = minDelta;
+    }
+
+    public boolean IsRestoringBestWeights() {
+        return restoreBestWeights;
+    }
+
+    /**
+     * Whether the weights with the lowest validation loss are put back at the end of training.
+     */
+    public void setRestoreBestWeights(boolean restoreBestWeights) {
+        this.restoreBestWeights = restoreBestWeights;
+    }
+
+    public String getBestWeightsFile() {
+        return bestWeightsFile;
+    }
+
+    /**
+     * Saves the best model to this file, with {@link #WriteInFile}, instead of keeping a copy of its weights
+     * in memory. Null keeps them in memory.
+     */
+    public void setBestWeightsFile(String bestWeightsFile) {
+        this.bestWeightsFile = bestWeightsFile;
+    }
+
+    /**
+     * Lowest validation loss reached by the last training, or NaN if it was not validated.
+     */
+    public double getBestValidationLoss() {
+        return bestValidationLoss;
+    }
+
+    /**
+     * Epoch of the lowest validation loss of the last training, or -1 if it was not validated.
+     */
+    public int getBestEpoch() {
+        return bestEpoch;
+    }
+
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Saves a checkpoint to this file every interval epochs during training, to resume it with
+     * {@link #LoadCheckpoint} and {@link #Resume}. The weights and optimizer state are copied at the end
+     * of the epoch and written on a background thread while training goes on. Null disables checkpoints.
+     */
+    public void setCheckpoint(String checkpointFile, int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("The checkpoint interval must be at least 1.");
+        }
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    long getUpdatesNumber() {
+        return updatesNumber;
+    }
+
+    int getValidationsWithoutImprovement() {
+        return validationsWithoutImprovement;
+    }
+
+    /**
+     * The copy of the best weights kept in memory during training, or null.
+     */
+    Layer[] getBestLayers() {
+        return bestLayers;
+    }
+
+    /**
+     * Remembers where the training saved in a checkpoint stopped, for {@link #Resume}.
+     */
+    void SetResumePoint(int epoch, long updatesNumber, double learningRate, double initialLearningRate,
+                        double decay) {
+        this.resumeEpoch = epoch;
+        this.updatesNumber = updatesNumber;
+        this.resumeLearningRate = learningRate;
+        this.resumeInitialLearningRate = initialLearningRate;
+        this.resumeDecay = decay;
+    }
+
+    /**
+     * Restores the early stopping state saved in a checkpoint, with the best weights if they were kept in memory.
+     */
+    void SetEarlyStoppingState(double bestValidationLoss, int bestEpoch, int validationsWithoutImprovement,
+                               Tensor[] bestWeights, Tensor[] bestBiases) {
+        this.bestValidationLoss = bestValidationLoss;
+        this.bestEpoch = bestEpoch;
+        this.validationsWithoutImprovement = validationsWithoutImprovement;
+        if (bestWeights == null) {
+            bestLayers = null;
+            return;
+        }
+        bestLayers = new Layer[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+            bestLayers[i] = layers[i].Copy();
+            bestLayers[i].getWeights().CopyRowsFrom(bestWeights[i], 0);
+            bestLayers[i].getBiases().CopyRowsFrom(bestBiases[i], 0);
+        }
+    }
+
+    private ForkJoinPool GetPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threadsNumber);
+        }
+        return pool;
+    }
+
+    public ILoss getLossFunction() {
         return lossFunction;
     }
 
-    public void InitLayers(double[][][] initialWeights, double[][] initialBiases,
+    Layer[] getLayers() {
+        return layers;
+    }
+
+    public void InitLayers(Tensor[] initialWeights, Tensor[] initialBiases,
                            int[] layerSizes, String hiddenActivation, String outputActivation) {
         for (int i = 0; i < layers.length; i++) {
             if (i < layers.length - 1) {
@@ -90,103 +470,574 @@ public class NeuralNetwork {
     public void InitLayers(int[] layerSizes, String hiddenActivation, String outputActivation) {
         for (int i = 0; i < layers.length; i++) {
             if (i < layers.length - 1) {
-                layers[i] = new Layer(layerSizes[i], layerSizes[i + 1], hiddenActivation);
+                layers[i] = new Layer(layerSizes[i], layerSizes[i + 1], hiddenActivation, precision);
             } else {
-                layers[i] = new Layer(layerSizes[i], layerSizes[i + 1], outputActivation);
+                layers[i] = new Layer(layerSizes[i], layerSizes[i + 1], outputActivation, precision);
             }
         }
     }
 
     public double[] NNForwardPropagation(double[] input) {
-        double[][] activations = {input};
+        return InferenceModel.Forward(layers, Tensor.Wrap(input, 1, input.length)).GetRow(0);
+    }
 
-        for (Layer layer: layers) {
-            activations = layer.ForwardPropagation(activations);
-        }
-        return activations[0];
+    public Tensor NNForwardPropagationBatch(Tensor inputs) {
+        return InferenceModel.Forward(layers, inputs);
     }
 
-    public double[][] NNForwardPropagationBatch(double[][] inputs) {
-        double[][] activations = inputs;
+    public Tensor NNForwardPropagationBatch(TrainingWorkspace workspace) {
+        return NNForwardPropagationBatch(workspace.getInputs(), workspace);
+    }
 
-        for (Layer layer: layers) {
-            activations = layer.ForwardPropagationBatch(activations);
+    /**
+     * Runs the forward pass of inputs held outside of the workspace, which must stay unchanged until the
+     * backward pass is done.
+     */
+    public Tensor NNForwardPropagationBatch(Tensor inputs, TrainingWorkspace workspace) {
+        Tensor activations = inputs;
+
+        for (int layer = 0; layer < layers.length; layer++) {
+            activations = layers[layer].ForwardPropagationBatch(activations, workspace.getLayer(layer));
         }
         return activations;
     }
 
-    public void BackPropagation(double[][] outputs, double[][] expectedOutputs) {
-        Layer outputLayer = layers[layers.length - 1];
-        double[][] computedOutputGradients = outputLayer.ComputeOutputGradientsBatch(outputs, expectedOutputs);
+    public void BackPropagation(TrainingWorkspace workspace) {
+        BackPropagation(workspace, false);
+    }
+
+    /**
+     * With labels, the output gradients are computed from the labels of the workspace instead of its expected outputs.
+     */
+    public void BackPropagation(TrainingWorkspace workspace, boolean labels) {
+        if (labels) {
+            BackPropagation(workspace, workspace.getLabels(), 0);
+        } else {
+            BackPropagation(workspace, workspace.getExpectedOutputs());
+        }
+    }
 
+    /**
+     * Backward pass against expected outputs held outside of the workspace.
+     */
+    public void BackPropagation(TrainingWorkspace workspace, Tensor expectedOutputs) {
+        int outputLayer = layers.length - 1;
+        BackPropagateHiddenLayers(workspace, layers[outputLayer].ComputeOutputGradientsBatch(lossFunction,
+                expectedOutputs, workspace.getLayer(outputLayer)));
+    }
+
+    /**
+     * Backward pass against the labels [labelsOffset, labelsOffset + batch size[ of an array held outside of
+     * the workspace.
+     */
+    public void BackPropagation(TrainingWorkspace workspace, int[] labels, int labelsOffset) {
+        int outputLayer = layers.length - 1;
+        BackPropagateHiddenLayers(workspace, layers[outputLayer].ComputeOutputGradientsBatch(lossFunction,
+                labels, labelsOffset, workspace.getLayer(outputLayer)));
+    }
+
+    private void BackPropagateHiddenLayers(TrainingWorkspace workspace, Tensor computedOutputGradients) {
         for (int layer = layers.length - 2; layer >= 0; layer--) {
-            computedOutputGradients = layers[layer].BackPropagationBatch(layers[layer + 1], computedOutputGradients);
+            computedOutputGradients = layers[layer].BackPropagationBatch(layers[layer + 1],
+                    computedOutputGradients, workspace.getLayer(layer));
         }
     }
 
-    public void UpdateAllWeights(double learningRate, int datasetSize) {
-        for (Layer layer : layers) {
-            layer.UpdateWeights(learningRate, datasetSize);
+    /**
+     * Returns one workspace per shard, able to hold a batch of the given size split across every shard.
+     * The current workspaces are reused when they are large enough.
+     */
+    public TrainingWorkspace[] AllocateWorkspaces(int maxBatchSize, int expectedOutputsNumber) {
+        int shardSize = ShardSize(maxBatchSize);
+
+        if (workspaces == null || !workspaces[0].Fits(shardSize, expectedOutputsNumber)) {
+            workspaces = new TrainingWorkspace[threadsNumber];
+            for (int shard = 0; shard < threadsNumber; shard++) {
+                workspaces[shard] = new TrainingWorkspace(shardSize, layerSizes, expectedOutputsNumber, precision);
+            }
+            shardLosses = new double[threadsNumber];
+            shardCorrect = new int[threadsNumber];
+            shardDataLoadNanos = new long[threadsNumber];
+            shardForwardNanos = new long[threadsNumber];
+            shardBackwardNanos = new long[threadsNumber];
         }
+        return workspaces;
     }
 
-    public void BatchGradientDescent(double[][] trainInputs, double[][] expectedOutputs,
-                                     double learningRate, int batchSize) {
-        int totalSize = trainInputs.length;
-        int batchesNumber = (int) Math.ceil((double) totalSize / batchSize);
-        double totalLoss = 0;
-        int totalCorrect = 0;
+    public void UpdateAllWeights(double learningRate, int datasetSize) {
+        updatesNumber++;
+        for (int layer = 0; layer < layers.length; layer++) {
+            layers[layer].UpdateWeights(optimizer, learningRate, datasetSize, updatesNumber,
+                    workspaces[0].getLayer(layer));
+        }
+    }
 
-        for (int batch = 0; batch < batchesNumber; batch++) {
-            int start = batch * batchSize;
-            int end = Math.min(start + batchSize, totalSize);
+    /**
+     * Trains on every batch of one epoch, reporting the metrics of each batch and of the epoch
+     * to the training listeners.
+     */
+    public void BatchGradientDescent(IBatchSource source, double learningRate, int epoch) {
+        int batchSize = source.getBatchSize();
+        AllocateWorkspaces(batchSize, source.getExpectedOutputsNumber());
+        TrainingMetrics epochMetrics = new TrainingMetrics(epoch, -1, learningRate);
+
+        for (ITrainingListener listener : listeners) {
+            listener.OnEpochStart(epoch, learningRate);
+        }
 
-            double[][] batchInputs = Arrays.copyOfRange(trainInputs, start, end);
-            double[][] batchOutputs = Arrays.copyOfRange(expectedOutputs, start, end);
-            double[][] outputs = NNForwardPropagationBatch(batchInputs);
+        long epochStart = System.nanoTime();
+        long epochAllocated = Allocations.TotalAllocatedBytes();
+        source.StartEpoch(epoch);
 
-            BackPropagation(outputs, batchOutputs);
+        for (int batchIndex = 0; ; batchIndex++) {
+            long start = System.nanoTime();
+            long allocated = Allocations.TotalAllocatedBytes();
+            Batch batch = source.Next();
+            if (batch == null) {
+                break;
+            }
+            long loaded = System.nanoTime();
+            TrainingMetrics metrics = new TrainingMetrics(epoch, batchIndex, learningRate);
+            metrics.samplesNumber = batch.getSize();
 
-            totalLoss += lossFunction.GlobalLoss(outputs, batchOutputs);
-            totalCorrect += GetCorrectPredictions(outputs, batchOutputs);
+            TrainBatch(batch);
+            source.Release(batch);
 
+            long trained = System.nanoTime();
             UpdateAllWeights(learningRate, batchSize);
+            long updated = System.nanoTime();
+
+            metrics.dataLoadNanos = loaded - start;
+            for (int shard = 0; shard < threadsNumber; shard++) {
+                metrics.totalLoss += shardLosses[shard];
+                metrics.correctPredictions += shardCorrect[shard];
+                metrics.dataLoadNanos += shardDataLoadNanos[shard];
+                metrics.forwardNanos += shardForwardNanos[shard];
+                metrics.backwardNanos += shardBackwardNanos[shard];
+            }
+            metrics.backwardNanos += reduceNanos;
+            metrics.updateNanos = updated - trained;
+            metrics.durationNanos = updated - start;
+            metrics.allocatedBytes = Allocations.Since(allocated);
+
+            epochMetrics.Add(metrics);
+            for (ITrainingListener listener : listeners) {
+                listener.OnBatchEnd(metrics);
+            }
         }
 
-        double averageLoss = totalLoss / batchSize;
-        double accuracy = (totalCorrect / (double) totalSize) * 100;
-        System.out.printf("Loss: %.6f - Accuracy: %.2f%%%n", averageLoss, accuracy);
+        epochMetrics.durationNanos = System.nanoTime() - epochStart;
+        epochMetrics.allocatedBytes = Allocations.Since(epochAllocated);
+        for (ITrainingListener listener : listeners) {
+            listener.OnEpochEnd(epochMetrics);
+        }
     }
 
+    /**
+     * Computes the gradients of a whole batch into the workspace of shard 0.
+     */
+    private void TrainBatch(IDataset batch) {
+        int size = batch.getSize();
+
+        reduceNanos = 0;
+        if (threadsNumber == 1) {
+            TrainShard(0, batch, 0, size);
+        } else {
+            GetPool().submit(() -> IntStream.range(0, threadsNumber).parallel()
+                    .forEach(shard -> TrainShard(shard, batch, 0, size))
+            ).join();
+
+            long start = System.nanoTime();
+            ReduceGradients(size);
+            reduceNanos = System.nanoTime() - start;
+        }
+    }
+
+    private int ShardSize(int batchSize) {
+        return (batchSize + threadsNumber - 1) / threadsNumber;
+    }
+
+    /**
+     * Runs the forward and backward passes of the rows of [start, end[ that belong to the given shard.
+     * Shards are filled in order, so shard 0 is never empty and the last ones may be.
+     */
+    private void TrainShard(int shard, IDataset dataset, int start, int end) {
+        int shardSize = ShardSize(end - start);
+        int shardStart = Math.min(start + shard * shardSize, end);
+        int shardEnd = Math.min(shardStart + shardSize, end);
+        TrainingWorkspace workspace = workspaces[shard];
+
+        shardLosses[shard] = 0;
+        shardCorrect[shard] = 0;
+        shardDataLoadNanos[shard] = 0;
+        shardForwardNanos[shard] = 0;
+        shardBackwardNanos[shard] = 0;
+        if (shardStart == shardEnd) {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        workspace.Resize(shardEnd - shardStart);
+        Tensor inputs = workspace.getInputs();
+        Tensor expectedOutputs = workspace.getExpectedOutputs();
+        int[] labels = dataset.HasLabels() ? workspace.getLabels() : null;
+        int labelsOffset = 0;
+
+        // The rows of a loaded batch are read in place rather than copied into the workspace.
+        if (dataset instanceof Batch batch) {
+            inputs = batch.getInputs().RowSlice(shardStart, shardEnd);
+            if (labels != null) {
+                labels = batch.getLabels();
+                labelsOffset = shardStart;
+            } else {
+                expectedOutputs = batch.getExpectedOutputs().RowSlice(shardStart, shardEnd);
+            }
+        } else if (labels != null) {
+            dataset.FillBatch(shardStart, inputs, labels);
+        } else {
+            dataset.FillBatch(shardStart, inputs, expectedOutputs);
+        }
+        long loaded = System.nanoTime();
+
+        Tensor outputs = NNForwardPropagationBatch(inputs, workspace);
+        if (labels != null) {
+            shardLosses[shard] = lossFunction.GlobalLoss(outputs, labels, labelsOffset);
+            shardCorrect[shard] = GetCorrectPredictions(outputs, labels, labelsOffset);
+        } else {
+            shardLosses[shard] = lossFunction.GlobalLoss(outputs, expectedOutputs);
+            shardCorrect[shard] = GetCorrectPredictions(outputs, expectedOutputs);
+        }
+        long forwarded = System.nanoTime();
+
+        if (labels != null) {
+            BackPropagation(workspace, labels, labelsOffset);
+        } else {
+            BackPropagation(workspace, expectedOutputs);
+        }
+        long backwarded = System.nanoTime();
+
+        shardDataLoadNanos[shard] = loaded - startTime;
+        shardForwardNanos[shard] = forwarded - loaded;
+        shardBackwardNanos[shard] = backwarded - forwarded;
+    }
+
+    /**
+     * Sums the gradients of every non-empty shard into shard 0. Each thread reduces its own slice of
+     * the gradient tensors, always adding the shards in the same order.
+     */
+    private void ReduceGradients(int batchSize) {
+        int usedShards = (batchSize + ShardSize(batchSize) - 1) / ShardSize(batchSize);
+
+        GetPool().submit(() -> IntStream.range(0, threadsNumber).parallel().forEach(part -> {
+            for (int layer = 0; layer < layers.length; layer++) {
+                LayerWorkspace target = workspaces[0].getLayer(layer);
+                for (int shard = 1; shard < usedShards; shard++) {
+                    target.AddGradients(workspaces[shard].getLayer(layer), part, threadsNumber);
+                }
+            }
+        })).join();
+    }
+
+    /**
+     * Runs the batched forward pass over a whole dataset and returns the average loss and the accuracy.
+     */
+    public TrainingMetrics Evaluate(IDataset dataset) {
+        return Evaluate(dataset, -1);
+    }
+
+    private TrainingMetrics Evaluate(IDataset dataset, int epoch) {
+        long start = System.nanoTime();
+        int chunksNumber = (dataset.getSize() + predictionBatchSize - 1) / predictionBatchSize;
+        double[] chunkLosses = new double[chunksNumber];
+        int[] chunkCorrect = new int[chunksNumber];
+
+        IntStream chunks = IntStream.range(0, chunksNumber);
+        if (chunksNumber > 1) {
+            chunks = chunks.parallel();
+        }
+        chunks.forEach(chunk -> {
+            int chunkStart = chunk * predictionBatchSize;
+            int size = Math.min(predictionBatchSize, dataset.getSize() - chunkStart);
+            Batch batch = Batch.For(dataset, size, precision);
+            batch.Load(dataset, chunkStart, size);
+
+            Tensor outputs = InferenceModel.Forward(layers, batch.getInputs());
+            if (batch.HasLabels()) {
+                chunkLosses[chunk] = lossFunction.GlobalLoss(outputs, batch.getLabels());
+                chunkCorrect[chunk] = GetCorrectPredictions(outputs, batch.getLabels());
+            } else {
+                chunkLosses[chunk] = lossFunction.GlobalLoss(outputs, batch.getExpectedOutputs());
+                chunkCorrect[chunk] = GetCorrectPredictions(outputs, batch.getExpectedOutputs());
+            }
+        });
+
+        TrainingMetrics metrics = new TrainingMetrics(epoch, -1, 0, true);
+        metrics.samplesNumber = dataset.getSize();
+        for (int chunk = 0; chunk < chunksNumber; chunk++) {
+            metrics.totalLoss += chunkLosses[chunk];
+            metrics.correctPredictions += chunkCorrect[chunk];
+        }
+        metrics.durationNanos = System.nanoTime() - start;
+        return metrics;
+    }
+
+    /**
+     * Trains on the class labels as they are: expected output j is 1 for the samples of class j, 0 otherwise.
+     * A single output neuron thus learns to output 1 for the class 0.
+     */
     public void Train(double[][] trainInputs, double[] expectedOutput, double learningRate,
                       double iterationsNumber, int batchSize, double decay) {
-        double[][] expectedOutputs = OneHotEncoder(expectedOutput, trainInputs[0].length);
-        double initialLr = learningRate;
+        Tensor inputs = Tensor.FromArray(trainInputs, precision);
+        int[] labels = new int[expectedOutput.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = (int) expectedOutput[i];
+        }
+
+        Train(new TensorDataset(inputs, labels, layerSizes[layerSizes.length - 1]), learningRate, iterationsNumber,
+                batchSize, decay);
+    }
+
+    /**
+     * Trains on a dataset that fills each batch itself, so it never has to be held in memory as doubles.
+     * The next batches are decoded on a background thread while the current one is trained on.
+     */
+    public void Train(IDataset dataset, double learningRate, double iterationsNumber, int batchSize, double decay) {
+        Train(dataset, batchSize, 0, learningRate, learningRate, iterationsNumber, decay, false);
+    }
+
+    public void Train(IBatchSource source, double learningRate, double iterationsNumber, double decay) {
+        Train(source, 0, learningRate, learningRate, iterationsNumber, decay, validationDataset, false);
+    }
+
+    /**
+     * Continues the training saved in the checkpoint this network was loaded from, starting at the epoch after
+     * the checkpoint with the same learning rate schedule, until the epoch iterationsNumber.
+     * The dataset must be the one of the interrupted training, held out validation samples included.
+     * Early stopping goes on from the best validation loss and the patience count saved in the checkpoint.
+     * The best weights kept in memory are saved with it; those kept in a best weights file are only restored
+     * if the same file is set again.
+     */
+    public void Resume(IDataset dataset, double iterationsNumber, int batchSize) {
+        CheckResumePoint();
+        int startEpoch = resumeEpoch;
+        resumeEpoch = -1;
+        Train(dataset, batchSize, startEpoch, resumeLearningRate, resumeInitialLearningRate, iterationsNumber,
+                resumeDecay, true);
+    }
+
+    public void Resume(IBatchSource source, double iterationsNumber) {
+        CheckResumePoint();
+        int startEpoch = resumeEpoch;
+        resumeEpoch = -1;
+        Train(source, startEpoch, resumeLearningRate, resumeInitialLearningRate, iterationsNumber, resumeDecay,
+                validationDataset, true);
+    }
+
+    private void CheckResumePoint() {
+        if (resumeEpoch < 0) {
+            throw new IllegalStateException("This network was not loaded from a checkpoint, or was already resumed.");
+        }
+    }
+
+    /**
+     * Holds out the last samples of the dataset for validation if there is a validation split, and trains on
+     * the others with batches prefetched in the background.
+     */
+    private void Train(IDataset dataset, int batchSize, int startEpoch, double learningRate, double initialLr,
+                       double iterationsNumber, double decay, boolean resumed) {
+        IDataset validation = validationDataset;
+        if (validationSplit > 0) {
+            int validationSize = (int) Math.round(dataset.getSize() * validationSplit);
+            int trainingSize = dataset.getSize() - validationSize;
+            validation = new DatasetRange(dataset, trainingSize, validationSize);
+            dataset = new DatasetRange(dataset, 0, trainingSize);
+        }
+
+        try (PrefetchBatchSource source = new PrefetchBatchSource(dataset, batchSize,
+                PrefetchBatchSource.DEFAULT_PREFETCHED_BATCHES, precision)) {
+            if (shuffle) {
+                source.setShuffleSeed(seed);
+            }
+            Train(source, startEpoch, learningRate, initialLr, iterationsNumber, decay, validation, resumed);
+        }
+    }
+
+    /**
+     * Trains from startEpoch to iterationsNumber included, validating every validation interval epochs when
+     * there is a validation set, stopping early once the validation loss no longer improves, and saving a
+     * checkpoint every checkpoint interval epochs. A resumed training keeps the early stopping state loaded
+     * from the checkpoint.
+     */
+    private void Train(IBatchSource source, int startEpoch, double learningRate, double initialLr,
+                       double iterationsNumber, double decay, IDataset validation, boolean resumed) {
+        if (!resumed) {
+            bestValidationLoss = Double.NaN;
+            bestEpoch = -1;
+            validationsWithoutImprovement = 0;
+            bestLayers = null;
+        }
+
+        try {
+            for (int epoch = startEpoch; epoch <= iterationsNumber; epoch++) {
+                BatchGradientDescent(source, learningRate, epoch);
+                learningRate = initialLr / (1 + decay * epoch);
+
+                if (validation != null && validation.getSize() > 0 && (epoch + 1) % validationInterval == 0
+                        && Validate(validation, epoch)) {
+                    break;
+                }
+
+                // Saved after the validation, so that the checkpoint holds the early stopping state of this epoch.
+                if (checkpointFile != null && (epoch + 1) % checkpointInterval == 0) {
+                    SaveCheckpoint(epoch + 1, learningRate, initialLr, decay);
+                }
+            }
+
+            if (restoreBestWeights && bestEpoch >= 0) {
+                RestoreBestWeights();
+            }
+        } finally {
+            bestLayers = null;
+            WaitForCheckpoint();
+            // The writer thread only lives as long as the training, the next one creates its own.
+            if (checkpointWriter != null) {
+                checkpointWriter.shutdown();
+                checkpointWriter = null;
+            }
+            for (ITrainingListener listener : listeners) {
+                listener.OnTrainingEnd();
+            }
+        }
+    }
+
+    /**
+     * Evaluates the network on the validation set, keeps its weights if they are the best so far, and returns
+     * whether training must stop early.
+     */
+    private boolean Validate(IDataset validation, int epoch) {
+        TrainingMetrics metrics = Evaluate(validation, epoch);
+        for (ITrainingListener listener : listeners) {
+            listener.OnValidationEnd(metrics);
+        }
+
+        if (bestEpoch < 0 || metrics.getLoss() < bestValidationLoss - minDelta) {
+            bestValidationLoss = metrics.getLoss();
+            bestEpoch = epoch;
+            validationsWithoutImprovement = 0;
+            SaveBestWeights();
+        } else if (patience > 0 && ++validationsWithoutImprovement >= patience) {
+            for (ITrainingListener listener : listeners) {
+                listener.OnEarlyStop(epoch, bestEpoch);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the training state into the checkpoint buffers and writes them on the checkpoint thread.
+     * The buffers are only reused once the previous checkpoint is written.
+     */
+    private void SaveCheckpoint(int nextEpoch, double learningRate, double initialLr, double decay) {
+        WaitForCheckpoint();
+        if (checkpoint == null) {
+            checkpoint = new Checkpoint(this);
+        }
+        if (checkpointWriter == null) {
+            checkpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        checkpoint.Capture(this, nextEpoch, learningRate, initialLr, decay);
+        String filePath = checkpointFile;
+        pendingCheckpoint = checkpointWriter.submit(() -> {
+            try {
+                checkpoint.Write(this, filePath);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void WaitForCheckpoint() {
+        if (pendingCheckpoint == null) {
+            return;
+        }
+        try {
+            pendingCheckpoint.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+        pendingCheckpoint = null;
+    }
+
+    private void SaveBestWeights() {
+        if (bestWeightsFile != null) {
+            WriteInFile(bestWeightsFile);
+            return;
+        }
+        if (bestLayers == null) {
+            bestLayers = new Layer[layers.length];
+            for (int i = 0; i < layers.length; i++) {
+                bestLayers[i] = layers[i].Copy();
+            }
+            return;
+        }
+        for (int i = 0; i < layers.length; i++) {
+            bestLayers[i].CopyWeightsFrom(layers[i]);
+        }
+    }
 
-        for (int epoch = 0; epoch <= iterationsNumber; epoch++) {
-            System.out.print("Epoch " + epoch + " - ");
-            BatchGradientDescent(trainInputs, expectedOutputs, learningRate, batchSize);
-            learningRate = initialLr / (1 + decay * epoch);
+    private void RestoreBestWeights() {
+        Layer[] best = bestLayers;
+        if (bestWeightsFile != null) {
+            NeuralNetwork saved = LoadFromFile(bestWeightsFile);
+            if (saved == null) {
+                return;
+            }
+            best = saved.layers;
+        }
+        for (int i = 0; i < layers.length; i++) {
+            layers[i].CopyWeightsFrom(best[i]);
         }
     }
 
-    public double[][] OneHotEncoder(double[] expectedOutput, int numClasses) {
+    public Tensor OneHotEncoder(double[] expectedOutput, int numClasses) {
         int inputsNumber = expectedOutput.length;
-        double[][] encodedOutputs = new double[inputsNumber][numClasses];
+        Tensor encodedOutputs = new Tensor(inputsNumber, numClasses, precision);
 
         for (int i = 0; i < inputsNumber; i++) {
             int expectedIndex = (int) expectedOutput[i];
-            encodedOutputs[i][expectedIndex] = 1.0;
+            encodedOutputs.set(i, expectedIndex, 1.0);
         }
 
         return encodedOutputs;
     }
 
-    public int GetCorrectPredictions(double[][] predictions, double[][] expectedOutputs) {
+    public int GetCorrectPredictions(Tensor predictions, int[] labels) {
+        return GetCorrectPredictions(predictions, labels, 0);
+    }
+
+    public int GetCorrectPredictions(Tensor predictions, int[] labels, int labelsOffset) {
         int correct = 0;
-        for (int i = 0; i < predictions.length; i++) {
-            int predictedClass = MathsUtilities.IndexMaxOfArray(predictions[i]);
-            int expectedClass = MathsUtilities.IndexMaxOfArray(expectedOutputs[i]);
+        for (int i = 0; i < predictions.getRows(); i++) {
+            if (MathsUtilities.IndexMaxOfRow(predictions, i) == labels[labelsOffset + i]) {
+                correct++;
+            }
+        }
+        return correct;
+    }
+
+    public int GetCorrectPredictions(Tensor predictions, Tensor expectedOutputs) {
+        int correct = 0;
+        for (int i = 0; i < predictions.getRows(); i++) {
+            int predictedClass = MathsUtilities.IndexMaxOfRow(predictions, i);
+            int expectedClass = MathsUtilities.IndexMaxOfRow(expectedOutputs, i);
 
             if (predictedClass == expectedClass ) {
                 correct++;
@@ -200,38 +1051,29 @@ public class NeuralNetwork {
     }
 
     public double[][] PredictAll(double[][] testInputs) {
-        double[][] predictions = new double[testInputs.length][];
-
-        for (int i = 0; i < predictions.length; i++) {
-            predictions[i] = NNForwardPropagation(testInputs[i]);
-        }
-
-        return predictions;
+        return InferenceModel.ForwardAll(layers, testInputs, predictionBatchSize).ToArray();
     }
 
     public double PredictClass(double[] testInput) {
-        double[] outputs = NNForwardPropagation(testInput);
-        if (outputs.length == 1) {
-            return outputs[0] >= 0.5 ? 0.0 : 1.0;
-        } else {
-            return MathsUtilities.IndexMaxOfArray(outputs);
-        }
+        return InferenceModel.OutputClass(NNForwardPropagation(testInput));
     }
 
     public double[] PredictAllClasses(double[][] testInputs) {
-        double[] predictions = new double[testInputs.length];
-
-        for (int i = 0; i < predictions.length; i++) {
-            double[] outputs = NNForwardPropagation(testInputs[i]);
+        return InferenceModel.OutputClasses(InferenceModel.ForwardAll(layers, testInputs, predictionBatchSize));
+    }
 
-            if (outputs.length == 1) {
-                predictions[i] = outputs[0] >= 0.5 ? 0.0 : 1.0;
-            } else {
-                predictions[i] = MathsUtilities.IndexMaxOfArray(outputs);
-            }
-        }
+    /**
+     * Returns a frozen copy of the current weights that can be shared between threads.
+     */
+    public InferenceModel ToInferenceModel() {
+        return new InferenceModel(this);
+    }
 
-        return predictions;
+    /**
+     * Returns a frozen copy of the current weights quantized to 8 bits, see {@link QuantizedModel}.
+     */
+    public QuantizedModel ToQuantizedModel() {
+        return new QuantizedModel(this);
     }
 
     public void DisplayPredictions(double[][] predictions) {
@@ -241,9 +1083,13 @@ public class NeuralNetwork {
     }
 
     public void DisplayTestAccuracy(double[][] inputs, double[] expectedOutput) {
-        double[][] expectedOutputs = OneHotEncoder(expectedOutput, inputs[0].length);
-        double[][] predictions = OneHotEncoder(PredictAllClasses(inputs), inputs[0].length);
-        int correct = GetCorrectPredictions(predictions, expectedOutputs);
+        double[] predictions = PredictAllClasses(inputs);
+        int correct = 0;
+        for (int i = 0; i < predictions.length; i++) {
+            if (predictions[i] == expectedOutput[i]) {
+                correct++;
+            }
+        }
         System.out.println("\u001B[32m" + "Accuracy: " + correct / (double) expectedOutput.length
                 + " (" + correct + "/" + expectedOutput.length + ")" + "\u001B[0m");
     }
@@ -267,16 +1113,30 @@ public class NeuralNetwork {
         for (Layer layer : layers) {
             for (int neuron = 0; neuron < layer.getNeuronsNumber(); neuron++) {
                 for (int feature = 0; feature < layer.getFeaturesNumber(); feature++) {
-                    allWeights[index++] = layer.getWeights()[neuron][feature];
+                    allWeights[index++] = layer.getWeights().get(neuron, feature);
                 }
-                allWeights[index++] = layer.getBiases()[neuron];
+                allWeights[index++] = layer.getBiases().get(0, neuron);
             }
         }
 
         return allWeights;
     }
 
+    /**
+     * Saves the model in the binary format described in {@link ModelFile}.
+     */
     public void WriteInFile(String filePath) {
+        try {
+            ModelFile.Write(this, filePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves the model in the legacy text format: one line per header field, then every weight on one line.
+     */
+    public void WriteInTextFile(String filePath) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
             writer.write(getLoss());
             writer.newLine();
@@ -303,7 +1163,37 @@ public class NeuralNetwork {
         }
     }
 
+    /**
+     * Loads a model saved by {@link #WriteInFile} or, for older files, by {@link #WriteInTextFile}.
+     */
     public static NeuralNetwork LoadFromFile(String filePath) {
+        try {
+            if (ModelFile.IsBinary(filePath)) {
+                return ModelFile.Read(filePath);
+            }
+            return LoadFromTextFile(filePath);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Loads a network saved by a checkpoint with its optimizer state, ready to {@link #Resume} its training.
+     */
+    public static NeuralNetwork LoadCheckpoint(String filePath) {
+        try {
+            return Checkpoint.Read(filePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    private static NeuralNetwork LoadFromTextFile(String filePath) throws IOException {
         try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
             String loss = reader.readLine();
             String hiddenActivation = reader.readLine();
@@ -315,31 +1205,26 @@ public class NeuralNetwork {
             String[] weightsStr = reader.readLine().split(" ");
             double[] allWeights = Arrays.stream(weightsStr).mapToDouble(Double::parseDouble).toArray();
 
-            double[][][] weights = new double[layerSizes.length - 1][][];
-            double[][] biases = new double[layerSizes.length - 1][];
+            Tensor[] weights = new Tensor[layerSizes.length - 1];
+            Tensor[] biases = new Tensor[layerSizes.length - 1];
 
             int index = 0;
             for (int l = 0; l < layerSizes.length - 1; l++) {
                 int nbNeurons = layerSizes[l + 1];
                 int nbFeatures = layerSizes[l];
 
-                weights[l] = new double[nbNeurons][nbFeatures];
-                biases[l] = new double[nbNeurons];
+                weights[l] = new Tensor(nbNeurons, nbFeatures);
+                biases[l] = new Tensor(1, nbNeurons);
 
                 for (int neuron = 0; neuron < nbNeurons; neuron++) {
                     for (int feature = 0; feature < nbFeatures; feature++) {
-                        weights[l][neuron][feature] = allWeights[index++];
+                        weights[l].set(neuron, feature, allWeights[index++]);
                     }
-                    biases[l][neuron] = allWeights[index++];
+                    biases[l].set(0, neuron, allWeights[index++]);
                 }
             }
 
             return new NeuralNetwork(weights, biases, layerSizes, loss, hiddenActivation, outputActivation);
-
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-
-        return null;
     }
 }
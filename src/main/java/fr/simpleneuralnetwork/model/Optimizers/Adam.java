@@ -0,0 +1,113 @@
+package fr.simpleneuralnetwork.model.Optimizers;
+
+import fr.simpleneuralnetwork.model.IOptimizer;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
+
+/**
+ * Adam (Kingma and Ba, 2014): moving averages of the gradients and of their squares, with bias correction.
+ * The corrections only depend on the step, so they are folded into the step size and epsilon once per update.
+ */
+public class Adam implements IOptimizer {
+
+    public static final double DEFAULT_BETA1 = 0.9;
+    public static final double DEFAULT_BETA2 = 0.999;
+    public static final double DEFAULT_EPSILON = 1E-8;
+
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+
+    public Adam() {
+        this(DEFAULT_BETA1, DEFAULT_BETA2, DEFAULT_EPSILON);
+    }
+
+    public Adam(double beta1, double beta2, double epsilon) {
+        if (beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1) {
+            throw new IllegalArgumentException("The betas must be in [0, 1[.");
+        }
+        if (epsilon <= 0) {
+            throw new IllegalArgumentException("Epsilon must be positive.");
+        }
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+    }
+
+    public double getBeta1() {
+        return beta1;
+    }
+
+    public double getBeta2() {
+        return beta2;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    @Override
+    public String GetName() {
+        return "adam";
+    }
+
+    @Override
+    public double[] getHyperparameters() {
+        return new double[]{beta1, beta2, epsilon};
+    }
+
+    @Override
+    public int getStateTensorsNumber() {
+        return 2;
+    }
+
+    @Override
+    public void Update(Tensor parameters, Tensor gradients, Tensor[] state, double learningRate, int datasetSize,
+                       long step) {
+        Tensor moments = state[0];
+        Tensor squares = state[1];
+        double correction = Math.sqrt(1 - Math.pow(beta2, step));
+        double stepSize = learningRate * correction / (1 - Math.pow(beta1, step));
+        double correctedEpsilon = epsilon * correction;
+
+        if (Vectorization.Applies(parameters, gradients, moments)) {
+            VectorKernels.AdamStep(parameters, gradients, moments, squares, stepSize, datasetSize,
+                    beta1, beta2, correctedEpsilon);
+            return;
+        }
+        double inverseSize = 1.0 / datasetSize;
+
+        if (parameters.IsFloat()) {
+            for (int i = 0; i < parameters.getRows(); i++) {
+                for (int j = 0; j < parameters.getCols(); j++) {
+                    double g = gradients.get(i, j) * inverseSize;
+                    double m = beta1 * moments.get(i, j) + (1 - beta1) * g;
+                    double v = beta2 * squares.get(i, j) + (1 - beta2) * (g * g);
+                    moments.set(i, j, m);
+                    squares.set(i, j, v);
+                    parameters.set(i, j, parameters.get(i, j) - stepSize * m / (Math.sqrt(v) + correctedEpsilon));
+                    gradients.set(i, j, 0);
+                }
+            }
+            return;
+        }
+        double[] p = parameters.getData();
+        double[] g = gradients.getData();
+        double[] m = moments.getData();
+        double[] v = squares.getData();
+
+        for (int i = 0; i < parameters.getRows(); i++) {
+            int pRow = parameters.Index(i, 0);
+            int gRow = gradients.Index(i, 0);
+            int mRow = moments.Index(i, 0);
+            for (int j = 0; j < parameters.getCols(); j++) {
+                double gradient = g[gRow + j] * inverseSize;
+                m[mRow + j] = beta1 * m[mRow + j] + (1 - beta1) * gradient;
+                v[mRow + j] = beta2 * v[mRow + j] + (1 - beta2) * (gradient * gradient);
+                p[pRow + j] -= stepSize * m[mRow + j] / (Math.sqrt(v[mRow + j]) + correctedEpsilon);
+                g[gRow + j] = 0;
+            }
+        }
+    }
+}
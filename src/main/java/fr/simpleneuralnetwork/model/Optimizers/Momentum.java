@@ -0,0 +1,84 @@
+package fr.simpleneuralnetwork.model.Optimizers;
+
+import fr.simpleneuralnetwork.model.IOptimizer;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
+
+/**
+ * Gradient descent with momentum: velocity = momentum * velocity + g, parameters -= learningRate * velocity,
+ * g being the gradient averaged over the batch.
+ */
+public class Momentum implements IOptimizer {
+
+    public static final double DEFAULT_MOMENTUM = 0.9;
+
+    private final double momentum;
+
+    public Momentum() {
+        this(DEFAULT_MOMENTUM);
+    }
+
+    public Momentum(double momentum) {
+        if (momentum < 0 || momentum >= 1) {
+            throw new IllegalArgumentException("The momentum must be in [0, 1[.");
+        }
+        this.momentum = momentum;
+    }
+
+    public double getMomentum() {
+        return momentum;
+    }
+
+    @Override
+    public String GetName() {
+        return "momentum";
+    }
+
+    @Override
+    public double[] getHyperparameters() {
+        return new double[]{momentum};
+    }
+
+    @Override
+    public int getStateTensorsNumber() {
+        return 1;
+    }
+
+    @Override
+    public void Update(Tensor parameters, Tensor gradients, Tensor[] state, double learningRate, int datasetSize,
+                       long step) {
+        Tensor velocity = state[0];
+        if (Vectorization.Applies(parameters, gradients, velocity)) {
+            VectorKernels.MomentumStep(parameters, gradients, velocity, learningRate, datasetSize, momentum);
+            return;
+        }
+        double inverseSize = 1.0 / datasetSize;
+
+        if (parameters.IsFloat()) {
+            for (int i = 0; i < parameters.getRows(); i++) {
+                for (int j = 0; j < parameters.getCols(); j++) {
+                    double v = momentum * velocity.get(i, j) + gradients.get(i, j) * inverseSize;
+                    velocity.set(i, j, v);
+                    parameters.set(i, j, parameters.get(i, j) - learningRate * v);
+                    gradients.set(i, j, 0);
+                }
+            }
+            return;
+        }
+        double[] p = parameters.getData();
+        double[] g = gradients.getData();
+        double[] v = velocity.getData();
+
+        for (int i = 0; i < parameters.getRows(); i++) {
+            int pRow = parameters.Index(i, 0);
+            int gRow = gradients.Index(i, 0);
+            int vRow = velocity.Index(i, 0);
+            for (int j = 0; j < parameters.getCols(); j++) {
+                v[vRow + j] = momentum * v[vRow + j] + g[gRow + j] * inverseSize;
+                p[pRow + j] -= learningRate * v[vRow + j];
+                g[gRow + j] = 0;
+            }
+        }
+    }
+}
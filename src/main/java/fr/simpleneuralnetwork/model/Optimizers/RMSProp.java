@@ -0,0 +1,96 @@
+package fr.simpleneuralnetwork.model.Optimizers;
+
+import fr.simpleneuralnetwork.model.IOptimizer;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
+
+/**
+ * Divides each gradient by a moving average of its magnitude:
+ * meanSquares = decay * meanSquares + (1 - decay) * g^2, parameters -= learningRate * g / (sqrt(meanSquares) + epsilon).
+ */
+public class RMSProp implements IOptimizer {
+
+    public static final double DEFAULT_DECAY = 0.9;
+    public static final double DEFAULT_EPSILON = 1E-8;
+
+    private final double decay;
+    private final double epsilon;
+
+    public RMSProp() {
+        this(DEFAULT_DECAY, DEFAULT_EPSILON);
+    }
+
+    public RMSProp(double decay, double epsilon) {
+        if (decay < 0 || decay >= 1) {
+            throw new IllegalArgumentException("The decay must be in [0, 1[.");
+        }
+        if (epsilon <= 0) {
+            throw new IllegalArgumentException("Epsilon must be positive.");
+        }
+        this.decay = decay;
+        this.epsilon = epsilon;
+    }
+
+    public double getDecay() {
+        return decay;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    @Override
+    public String GetName() {
+        return "rmsprop";
+    }
+
+    @Override
+    public double[] getHyperparameters() {
+        return new double[]{decay, epsilon};
+    }
+
+    @Override
+    public int getStateTensorsNumber() {
+        return 1;
+    }
+
+    @Override
+    public void Update(Tensor parameters, Tensor gradients, Tensor[] state, double learningRate, int datasetSize,
+                       long step) {
+        Tensor meanSquares = state[0];
+        if (Vectorization.Applies(parameters, gradients, meanSquares)) {
+            VectorKernels.RMSPropStep(parameters, gradients, meanSquares, learningRate, datasetSize, decay, epsilon);
+            return;
+        }
+        double inverseSize = 1.0 / datasetSize;
+
+        if (parameters.IsFloat()) {
+            for (int i = 0; i < parameters.getRows(); i++) {
+                for (int j = 0; j < parameters.getCols(); j++) {
+                    double g = gradients.get(i, j) * inverseSize;
+                    double s = decay * meanSquares.get(i, j) + (1 - decay) * (g * g);
+                    meanSquares.set(i, j, s);
+                    parameters.set(i, j, parameters.get(i, j) - learningRate * g / (Math.sqrt(s) + epsilon));
+                    gradients.set(i, j, 0);
+                }
+            }
+            return;
+        }
+        double[] p = parameters.getData();
+        double[] g = gradients.getData();
+        double[] s = meanSquares.getData();
+
+        for (int i = 0; i < parameters.getRows(); i++) {
+            int pRow = parameters.Index(i, 0);
+            int gRow = gradients.Index(i, 0);
+            int sRow = meanSquares.Index(i, 0);
+            for (int j = 0; j < parameters.getCols(); j++) {
+                double gradient = g[gRow + j] * inverseSize;
+                s[sRow + j] = decay * s[sRow + j] + (1 - decay) * (gradient * gradient);
+                p[pRow + j] -= learningRate * gradient / (Math.sqrt(s[sRow + j]) + epsilon);
+                g[gRow + j] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package fr.simpleneuralnetwork.model.Optimizers;
+
+import fr.simpleneuralnetwork.model.IOptimizer;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.VectorKernels;
+import fr.simpleneuralnetwork.utils.Vectorization;
+
+/**
+ * Plain gradient descent: parameters -= learningRate * gradients / datasetSize.
+ */
+public class SGD implements IOptimizer {
+
+    @Override
+    public String GetName() {
+        return "sgd";
+    }
+
+    @Override
+    public double[] getHyperparameters() {
+        return new double[0];
+    }
+
+    @Override
+    public int getStateTensorsNumber() {
+        return 0;
+    }
+
+    @Override
+    public void Update(Tensor parameters, Tensor gradients, Tensor[] state, double learningRate, int datasetSize,
+                       long step) {
+        if (Vectorization.Applies(parameters, gradients)) {
+            VectorKernels.GradientStep(parameters, gradients, learningRate, datasetSize);
+            return;
+        }
+        if (parameters.IsFloat()) {
+            UpdateFloat(parameters, gradients, learningRate, datasetSize);
+            return;
+        }
+        double[] parametersData = parameters.getData();
+        double[] gradientsData = gradients.getData();
+
+        for (int i = 0; i < parameters.getRows(); i++) {
+            int row = parameters.Index(i, 0);
+            int gradientsRow = gradients.Index(i, 0);
+            for (int j = 0; j < parameters.getCols(); j++) {
+                parametersData[row + j] -= learningRate * gradientsData[gradientsRow + j] / datasetSize;
+                gradientsData[gradientsRow + j] = 0;
+            }
+        }
+    }
+
+    private void UpdateFloat(Tensor parameters, Tensor gradients, double learningRate, int datasetSize) {
+        float[] parametersData = parameters.getFloatData();
+        float[] gradientsData = gradients.getFloatData();
+        float scale = (float) (learningRate / datasetSize);
+
+        for (int i = 0; i < parameters.getRows(); i++) {
+            int row = parameters.Index(i, 0);
+            int gradientsRow = gradients.Index(i, 0);
+            for (int j = 0; j < parameters.getCols(); j++) {
+                parametersData[row + j] -= scale * gradientsData[gradientsRow + j];
+                gradientsData[gradientsRow + j] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package fr.simpleneuralnetwork.model;
+
+import fr.simpleneuralnetwork.utils.Gemm;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.QuantizedTensor;
+import fr.simpleneuralnetwork.utils.Tensor;
+
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+/**
+ * Frozen network with 8-bit weights, for prediction only.
+ * <p>
+ * The weights of each neuron are quantized with their own scale, and the biases are kept in float.
+ * At prediction time, the inputs of each layer are quantized row by row as well, so the products are
+ * computed on bytes with exact integer sums, then scaled back to float for the biases and activations.
+ * Like {@link InferenceModel}, an instance is immutable and can be shared by any number of threads.
+ */
+public final class QuantizedModel implements IPredictionModel {
+
+    private final QuantizedTensor[] weights; // [neuronsNumber x featuresNumber] per layer
+    private final Tensor[] biases;           // [1 x neuronsNumber] per layer, in float
+    private final IActivation[] activations;
+    private final int[] layerSizes;
+    private final String loss;
+    private final String hiddenActivation;
+    private final String outputActivation;
+
+    /**
+     * Quantizes the current weights of the network.
+     */
+    public QuantizedModel(NeuralNetwork network) {
+        this(QuantizeWeights(network.getLayers()), FloatBiases(network.getLayers()), network.getLayerSizes().clone(),
+                network.getLoss(), network.getHiddenActivation(), network.getOutputActivation());
+    }
+
+    QuantizedModel(QuantizedTensor[] weights, Tensor[] biases, int[] layerSizes, String loss,
+                   String hiddenActivation, String outputActivation) {
+        this.weights = weights;
+        this.biases = biases;
+        this.layerSizes = layerSizes;
+        this.loss = loss;
+        this.hiddenActivation = hiddenActivation;
+        this.outputActivation = outputActivation;
+
+        this.activations = new IActivation[weights.length];
+        for (int l = 0; l < activations.length; l++) {
+            activations[l] = Layer.NewActivationFunction(l == activations.length - 1 ? outputActivation : hiddenActivation);
+        }
+    }
+
+    private static QuantizedTensor[] QuantizeWeights(Layer[] layers) {
+        QuantizedTensor[] weights = new QuantizedTensor[layers.length];
+
+        for (int l = 0; l < layers.length; l++) {
+            weights[l] = QuantizedTensor.Quantize(layers[l].getWeights());
+        }
+        return weights;
+    }
+
+    private static Tensor[] FloatBiases(Layer[] layers) {
+        Tensor[] biases = new Tensor[layers.length];
+
+        for (int l = 0; l < layers.length; l++) {
+            biases[l] = layers[l].getBiases().Copy(Precision.FLOAT);
+        }
+        return biases;
+    }
+
+    /**
+     * Loads a quantized model, or quantizes a model saved in any of the formats of {@link NeuralNetwork}.
+     */
+    public static QuantizedModel LoadFromFile(String filePath) {
+        try {
+            if (ModelFile.IsBinary(filePath) && ModelFile.IsQuantized(filePath)) {
+                return ModelFile.ReadQuantized(filePath);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        NeuralNetwork network = NeuralNetwork.LoadFromFile(filePath);
+        return network != null ? new QuantizedModel(network) : null;
+    }
+
+    /**
+     * Saves the model in the quantized variant of the binary format described in {@link ModelFile}.
+     */
+    public void WriteInFile(String filePath) {
+        try {
+            ModelFile.WriteQuantized(this, filePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    QuantizedTensor[] getWeights() {
+        return weights;
+    }
+
+    Tensor[] getBiases() {
+        return biases;
+    }
+
+    @Override
+    public int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    public String getLoss() {
+        return loss;
+    }
+
+    public String getHiddenActivation() {
+        return hiddenActivation;
+    }
+
+    public String getOutputActivation() {
+        return outputActivation;
+    }
+
+    /**
+     * Bytes taken by the weights, their scales and the biases.
+     */
+    public long getParametersBytes() {
+        long bytes = 0;
+
+        for (int l = 0; l < weights.length; l++) {
+            bytes += (long) weights[l].getRows() * weights[l].getCols()
+                    + (long) weights[l].getRows() * Float.BYTES
+                    + (long) biases[l].getCols() * Float.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Inputs in any precision, outputs in float.
+     */
+    @Override
+    public Tensor Forward(Tensor inputs) {
+        Tensor activations = inputs;
+
+        for (int l = 0; l < weights.length; l++) {
+            QuantizedTensor quantizedInputs = QuantizedTensor.Quantize(activations);
+            Tensor outputs = new Tensor(activations.getRows(), weights[l].getRows(), Precision.FLOAT);
+            Gemm.MultTransB(quantizedInputs, weights[l], biases[l], outputs);
+            this.activations[l].ApplyInto(outputs, outputs);
+            activations = outputs;
+        }
+        return activations;
+    }
+
+    /**
+     * Runs the forward pass over every input, chunkSize rows at a time, like {@link InferenceModel#ForwardAll}.
+     * The outputs are gathered in double precision.
+     */
+    private Tensor ForwardAll(double[][] inputs, int chunkSize) {
+        Tensor outputs = new Tensor(inputs.length, layerSizes[layerSizes.length - 1]);
+        int chunksNumber = (inputs.length + chunkSize - 1) / chunkSize;
+
+        IntStream chunks = IntStream.range(0, chunksNumber);
+        if (chunksNumber > 1) {
+            chunks = chunks.parallel();
+        }
+
+        chunks.forEach(chunk -> {
+            int start = chunk * chunkSize;
+            int end = Math.min(start + chunkSize, inputs.length);
+            Tensor chunkInputs = new Tensor(end - start, layerSizes[0], Precision.FLOAT);
+
+            for (int i = start; i < end; i++) {
+                chunkInputs.SetRow(i - start, inputs[i]);
+            }
+            outputs.RowSlice(start, end).CopyRowsFrom(Forward(chunkInputs), 0);
+        });
+
+        return outputs;
+    }
+
+    @Override
+    public double[] Predict(double[] input) {
+        return Forward(Tensor.Wrap(input, 1, input.length)).GetRow(0);
+    }
+
+    @Override
+    public double PredictClass(double[] input) {
+        return InferenceModel.OutputClass(Predict(input));
+    }
+
+    @Override
+    public double[][] PredictAll(double[][] inputs) {
+        return ForwardAll(inputs, InferenceModel.DEFAULT_PREDICTION_BATCH_SIZE).ToArray();
+    }
+
+    @Override
+    public double[] PredictAllClasses(double[][] inputs) {
+        return InferenceModel.OutputClasses(ForwardAll(inputs, InferenceModel.DEFAULT_PREDICTION_BATCH_SIZE));
+    }
+}
@@ -0,0 +1,135 @@
+package fr.simpleneuralnetwork.model;
+
+/**
+ * Loss, accuracy, throughput and timings of a batch, of a whole epoch or of the evaluation of a validation set.
+ * <p>
+ * The forward, backward and data loading times are summed over the training threads, so with several
+ * threads they can add up to more than the duration. The forward time includes computing the loss and
+ * the accuracy, and the backward time includes summing the gradients of every thread.
+ */
+public final class TrainingMetrics {
+
+    private final int epoch;
+    private final int batch;
+    private final double learningRate;
+    private final boolean validation;
+
+    int samplesNumber;
+    double totalLoss;
+    int correctPredictions;
+    long durationNanos;
+    long dataLoadNanos;
+    long forwardNanos;
+    long backwardNanos;
+    long updateNanos;
+    long allocatedBytes;
+
+    TrainingMetrics(int epoch, int batch, double learningRate) {
+        this(epoch, batch, learningRate, false);
+    }
+
+    TrainingMetrics(int epoch, int batch, double learningRate, boolean validation) {
+        this.epoch = epoch;
+        this.batch = batch;
+        this.learningRate = learningRate;
+        this.validation = validation;
+    }
+
+    /**
+     * Adds the metrics of one batch of the epoch to these ones.
+     */
+    void Add(TrainingMetrics other) {
+        samplesNumber += other.samplesNumber;
+        totalLoss += other.totalLoss;
+        correctPredictions += other.correctPredictions;
+        dataLoadNanos += other.dataLoadNanos;
+        forwardNanos += other.forwardNanos;
+        backwardNanos += other.backwardNanos;
+        updateNanos += other.updateNanos;
+        allocatedBytes = allocatedBytes < 0 || other.allocatedBytes < 0 ? -1 : allocatedBytes + other.allocatedBytes;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Index of the batch in its epoch, or -1 for the metrics of a whole epoch.
+     */
+    public int getBatch() {
+        return batch;
+    }
+
+    public boolean IsEpoch() {
+        return batch < 0 && !validation;
+    }
+
+    /**
+     * Whether these are the metrics of a validation set, evaluated after the epoch. Only the loss, the accuracy
+     * and the duration are then measured.
+     */
+    public boolean IsValidation() {
+        return validation;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public int getSamplesNumber() {
+        return samplesNumber;
+    }
+
+    /**
+     * Average loss of a sample.
+     */
+    public double getLoss() {
+        return totalLoss / samplesNumber;
+    }
+
+    /**
+     * Percentage of correctly classified samples.
+     */
+    public double getAccuracy() {
+        return (correctPredictions / (double) samplesNumber) * 100;
+    }
+
+    public int getCorrectPredictions() {
+        return correctPredictions;
+    }
+
+    public double getSamplesPerSecond() {
+        return samplesNumber / (durationNanos / 1e9);
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Time spent waiting for the batch and copying it into the training buffers.
+     */
+    public long getDataLoadNanos() {
+        return dataLoadNanos;
+    }
+
+    public long getForwardNanos() {
+        return forwardNanos;
+    }
+
+    public long getBackwardNanos() {
+        return backwardNanos;
+    }
+
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    /**
+     * Bytes allocated on the heap by every thread of the JVM during the batch or the epoch,
+     * or -1 when the JVM cannot measure it.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,67 @@
+package fr.simpleneuralnetwork.model;
+
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.Tensor;
+
+/**
+ * Every buffer needed by a training step: the batch inputs, the expected
+ * outputs or class labels and the workspace of each layer. Allocated once per maximum batch
+ * size, so the steady state of training does not allocate.
+ */
+public class TrainingWorkspace {
+
+    private final int maxBatchSize;
+    private final Tensor inputs;
+    private final Tensor expectedOutputs;
+    private final int[] labels;
+    private final LayerWorkspace[] layers;
+
+    public TrainingWorkspace(int maxBatchSize, int[] layerSizes, int expectedOutputsNumber, Precision precision) {
+        this.maxBatchSize = maxBatchSize;
+        inputs = new Tensor(maxBatchSize, layerSizes[0], precision);
+        expectedOutputs = new Tensor(maxBatchSize, expectedOutputsNumber, precision);
+        labels = new int[maxBatchSize];
+        layers = new LayerWorkspace[layerSizes.length - 1];
+
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = new LayerWorkspace(maxBatchSize, layerSizes[i], layerSizes[i + 1], precision);
+        }
+    }
+
+    public boolean Fits(int batchSize, int expectedOutputsNumber) {
+        return batchSize <= maxBatchSize && expectedOutputs.getCols() == expectedOutputsNumber;
+    }
+
+    public void Resize(int batchSize) {
+        inputs.Resize(batchSize);
+        expectedOutputs.Resize(batchSize);
+
+        for (LayerWorkspace layer : layers) {
+            layer.Resize(batchSize);
+        }
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public Tensor getInputs() {
+        return inputs;
+    }
+
+    public Tensor getExpectedOutputs() {
+        return expectedOutputs;
+    }
+
+    public int[] getLabels() {
+        return labels;
+    }
+
+    public LayerWorkspace getLayer(int index) {
+        return layers[index];
+    }
+
+    public int getLayersNumber() {
+        return layers.length;
+    }
+}
@@ -0,0 +1,268 @@
+package fr.simpleneuralnetwork.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer for the requests and responses of the {@link PredictionServer}.
+ * Objects are read as maps, arrays as lists, numbers as doubles.
+ */
+final class Json {
+
+    private final String text;
+    private int position;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a single JSON value
+     */
+    static Object Parse(String text) {
+        Json reader = new Json(text);
+        Object value = reader.ReadValue();
+        reader.SkipWhitespace();
+        if (reader.position != text.length()) {
+            throw reader.Error("Unexpected content after the JSON value");
+        }
+        return value;
+    }
+
+    /**
+     * Reads a list of numbers, as found in the parsed JSON.
+     */
+    static double[] ToArray(Object value, String name) {
+        if (!(value instanceof List<?> list)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be an array of numbers.");
+        }
+        double[] array = new double[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            if (!(list.get(i) instanceof Double number)) {
+                throw new IllegalArgumentException("\"" + name + "\" must be an array of numbers.");
+            }
+            array[i] = number;
+        }
+        return array;
+    }
+
+    static void AppendArray(StringBuilder builder, double[] array) {
+        builder.append('[');
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            AppendNumber(builder, array[i]);
+        }
+        builder.append(']');
+    }
+
+    static void AppendNumber(StringBuilder builder, double number) {
+        if (Double.isFinite(number) && number == Math.rint(number) && Math.abs(number) < 1e15) {
+            builder.append((long) number);
+        } else if (Double.isFinite(number)) {
+            builder.append(number);
+        } else {
+            builder.append("null");
+        }
+    }
+
+    static String Quote(String text) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private Object ReadValue() {
+        SkipWhitespace();
+        if (position >= text.length()) {
+            throw Error("Unexpected end of JSON");
+        }
+
+        char c = text.charAt(position);
+        switch (c) {
+            case '{':
+                return ReadObject();
+            case '[':
+                return ReadArray();
+            case '"':
+                return ReadString();
+            case 't':
+                Expect("true");
+                return Boolean.TRUE;
+            case 'f':
+                Expect("false");
+                return Boolean.FALSE;
+            case 'n':
+                Expect("null");
+                return null;
+            default:
+                return ReadNumber();
+        }
+    }
+
+    private Map<String, Object> ReadObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        position++;
+        SkipWhitespace();
+        if (Peek('}')) {
+            position++;
+            return object;
+        }
+
+        while (true) {
+            SkipWhitespace();
+            if (!Peek('"')) {
+                throw Error("Expected a key");
+            }
+            String key = ReadString();
+            SkipWhitespace();
+            if (!Peek(':')) {
+                throw Error("Expected ':'");
+            }
+            position++;
+            object.put(key, ReadValue());
+
+            SkipWhitespace();
+            if (Peek(',')) {
+                position++;
+            } else if (Peek('}')) {
+                position++;
+                return object;
+            } else {
+                throw Error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private List<Object> ReadArray() {
+        List<Object> array = new ArrayList<>();
+        position++;
+        SkipWhitespace();
+        if (Peek(']')) {
+            position++;
+            return array;
+        }
+
+        while (true) {
+            array.add(ReadValue());
+            SkipWhitespace();
+            if (Peek(',')) {
+                position++;
+            } else if (Peek(']')) {
+                position++;
+                return array;
+            } else {
+                throw Error("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private String ReadString() {
+        StringBuilder builder = new StringBuilder();
+        position++;
+
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '"') {
+                return builder.toString();
+            }
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (position >= text.length()) {
+                break;
+            }
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > text.length()) {
+                        throw Error("Invalid unicode escape");
+                    }
+                    builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    position += 4;
+                    break;
+                default:
+                    builder.append(escaped);
+            }
+        }
+        throw Error("Unterminated string");
+    }
+
+    private Double ReadNumber() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        try {
+            return Double.parseDouble(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            position = start;
+            throw Error("Invalid value");
+        }
+    }
+
+    private void Expect(String word) {
+        if (!text.startsWith(word, position)) {
+            throw Error("Invalid value");
+        }
+        position += word.length();
+    }
+
+    private boolean Peek(char c) {
+        return position < text.length() && text.charAt(position) == c;
+    }
+
+    private void SkipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException Error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + ".");
+    }
+}
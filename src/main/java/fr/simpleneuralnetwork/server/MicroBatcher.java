@@ -0,0 +1,134 @@
+package fr.simpleneuralnetwork.server;
+
+import fr.simpleneuralnetwork.model.IPredictionModel;
+import fr.simpleneuralnetwork.utils.Tensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers the samples submitted by concurrent requests into batches for a single forward pass.
+ * <p>
+ * A dispatcher thread takes the oldest pending sample, then waits for more until the batch holds
+ * maxBatchSize samples or the oldest one has waited maxWaitNanos. While a batch is computed, the next
+ * one fills up, so the batches grow with the load and a lone request only waits maxWaitNanos.
+ * Each batch is predicted by the model of the {@link ModelRegistry} at the time the batch starts.
+ */
+final class MicroBatcher implements AutoCloseable {
+
+    private static final class PendingSample {
+        final double[] input;
+        final long submitNanos;
+        final CompletableFuture<double[]> output = new CompletableFuture<>();
+
+        PendingSample(double[] input) {
+            this.input = input;
+            this.submitNanos = System.nanoTime();
+        }
+    }
+
+    private final ModelRegistry registry;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final ServerMetrics metrics;
+    private final BlockingQueue<PendingSample> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    MicroBatcher(ModelRegistry registry, int maxBatchSize, long maxWaitNanos, ServerMetrics metrics) {
+        this.registry = registry;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWaitNanos;
+        this.metrics = metrics;
+
+        this.dispatcher = new Thread(this::Dispatch, "prediction-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Queues a sample and returns the future outputs of the network for it.
+     */
+    CompletableFuture<double[]> Submit(double[] input) {
+        PendingSample sample = new PendingSample(input);
+        queue.add(sample);
+        // Once closed, the dispatcher may already have failed the pending samples and stopped.
+        if (closed && queue.remove(sample)) {
+            sample.output.completeExceptionally(Stopped());
+        }
+        return sample.output;
+    }
+
+    private static IllegalStateException Stopped() {
+        return new IllegalStateException("The prediction server is stopped.");
+    }
+
+    private void Dispatch() {
+        List<PendingSample> batch = new ArrayList<>(maxBatchSize);
+
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                long deadline = batch.get(0).submitNanos + maxWaitNanos;
+
+                while (batch.size() < maxBatchSize) {
+                    PendingSample sample = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (sample == null) {
+                        break;
+                    }
+                    batch.add(sample);
+                }
+
+                Predict(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (PendingSample sample : batch) {
+            sample.output.completeExceptionally(Stopped());
+        }
+        for (PendingSample sample = queue.poll(); sample != null; sample = queue.poll()) {
+            sample.output.completeExceptionally(Stopped());
+        }
+    }
+
+    // The whole batch is predicted by the model served when it starts, even if a new one is swapped in meanwhile.
+    private void Predict(List<PendingSample> batch) {
+        IPredictionModel model = registry.getModel();
+        try {
+            Tensor inputs = new Tensor(batch.size(), model.getFeaturesNumber());
+            for (int i = 0; i < batch.size(); i++) {
+                inputs.SetRow(i, batch.get(i).input);
+            }
+
+            Tensor outputs = model.Forward(inputs);
+            metrics.RecordBatch(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).output.complete(outputs.GetRow(i));
+            }
+        } catch (Throwable e) {
+            // Errors too, an OutOfMemoryError on a large batch above all, only fail this batch: the dispatcher
+            // thread must outlive them or every later sample would wait forever.
+            for (PendingSample sample : batch) {
+                sample.output.completeExceptionally(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package fr.simpleneuralnetwork.server;
+
+import fr.simpleneuralnetwork.model.IPredictionModel;
+import fr.simpleneuralnetwork.utils.Tensor;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the model served by a {@link PredictionServer}, and reloads it when its file changes.
+ * <p>
+ * The directory of the model file is watched by a background thread. Once the file has not changed for
+ * {@link #QUIET_MILLIS} milliseconds, the new version is loaded and checked: same number of inputs and outputs
+ * as the current model, and a forward pass with finite outputs. Only then is the reference swapped, so
+ * predictions running on the previous version finish with it and the next ones use the new one.
+ * A version that cannot be loaded or fails the checks is skipped, and the current one keeps being served.
+ */
+public final class ModelRegistry implements AutoCloseable {
+
+    public static final long QUIET_MILLIS = 200;
+
+    /**
+     * A loaded model and when it was loaded. Immutable.
+     */
+    public static final class ModelVersion {
+        private final IPredictionModel model;
+        private final long version;
+        private final long loadedAtMillis;
+        private final double loadMillis;
+
+        ModelVersion(IPredictionModel model, long version, double loadMillis) {
+            this.model = model;
+            this.version = version;
+            this.loadedAtMillis = System.currentTimeMillis();
+            this.loadMillis = loadMillis;
+        }
+
+        public IPredictionModel getModel() {
+            return model;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getLoadedAtMillis() {
+            return loadedAtMillis;
+        }
+
+        /**
+         * Time taken to load and check this version.
+         */
+        public double getLoadMillis() {
+            return loadMillis;
+        }
+    }
+
+    private final Path filePath;
+    private final AtomicReference<ModelVersion> current = new AtomicReference<>();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder failedReloads = new LongAdder();
+    private volatile String lastError;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * Serves a fixed model, never reloaded.
+     */
+    public ModelRegistry(IPredictionModel model) {
+        this.filePath = null;
+        current.set(new ModelVersion(model, 1, 0));
+    }
+
+    /**
+     * Loads the model file, in any format of {@link IPredictionModel#LoadFromFile}.
+     * Call {@link #StartWatching()} to reload it when it changes.
+     */
+    public ModelRegistry(String filePath) throws IOException {
+        this.filePath = Path.of(filePath).toAbsolutePath();
+        if (!Reload()) {
+            throw new IOException("Cannot load the model " + filePath + ": " + lastError);
+        }
+    }
+
+    public IPredictionModel getModel() {
+        return current.get().getModel();
+    }
+
+    public ModelVersion getCurrent() {
+        return current.get();
+    }
+
+    public long getVersion() {
+        return current.get().getVersion();
+    }
+
+    public long getReloadsNumber() {
+        return reloads.sum();
+    }
+
+    public long getFailedReloadsNumber() {
+        return failedReloads.sum();
+    }
+
+    /**
+     * Why the last reload failed, or null if it succeeded.
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Loads the model file again and swaps it in if it passes the checks.
+     * Returns whether the served model changed.
+     */
+    public synchronized boolean Reload() {
+        if (filePath == null) {
+            throw new IllegalStateException("This registry serves a fixed model.");
+        }
+
+        long start = System.nanoTime();
+        IPredictionModel model;
+        String error;
+        try {
+            model = IPredictionModel.LoadFromFile(filePath.toString());
+            error = model == null ? "the file cannot be read" : Check(model);
+        } catch (RuntimeException e) {
+            // A text model read while it is being written can be cut anywhere.
+            model = null;
+            error = e.toString();
+        }
+        if (error != null) {
+            lastError = error;
+            failedReloads.increment();
+            System.err.println("Model " + filePath + " not reloaded: " + error + ".");
+            return false;
+        }
+
+        ModelVersion previous = current.get();
+        current.set(new ModelVersion(model, previous == null ? 1 : previous.getVersion() + 1,
+                (System.nanoTime() - start) / 1e6));
+        if (previous != null) {
+            reloads.increment();
+        }
+        lastError = null;
+        return true;
+    }
+
+    // The clients keep sending the same inputs, so the new model must take and return as many values.
+    private String Check(IPredictionModel model) {
+        int[] layerSizes = model.getLayerSizes();
+        ModelVersion previous = current.get();
+        if (previous != null) {
+            int[] previousSizes = previous.getModel().getLayerSizes();
+            if (layerSizes[0] != previousSizes[0] || layerSizes[layerSizes.length - 1] != previousSizes[previousSizes.length - 1]) {
+                return "its layer sizes " + Arrays.toString(layerSizes) + " do not match the inputs and outputs of "
+                        + Arrays.toString(previousSizes);
+            }
+        }
+
+        Tensor outputs = model.Forward(new Tensor(1, layerSizes[0]));
+        for (int j = 0; j < outputs.getCols(); j++) {
+            if (!Double.isFinite(outputs.get(0, j))) {
+                return "it predicts non-finite outputs";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts the background thread that reloads the model when its file is created, modified or replaced.
+     */
+    public synchronized void StartWatching() throws IOException {
+        if (filePath == null) {
+            throw new IllegalStateException("This registry serves a fixed model.");
+        }
+        if (watcher != null) {
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        filePath.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(this::Watch, "model-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void Watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = TouchesModel(key);
+
+                // Wait for the writes to settle, so that a file being written is loaded once, complete.
+                while (changed) {
+                    WatchKey next = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    TouchesModel(next);
+                }
+                if (changed) {
+                    Reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped by close().
+        }
+    }
+
+    private boolean TouchesModel(WatchKey key) {
+        boolean touches = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || filePath.getFileName().equals(event.context())) {
+                touches = true;
+            }
+        }
+        key.reset();
+        return touches;
+    }
+
+    String ToJson() {
+        ModelVersion version = current.get();
+        return String.format(Locale.ROOT, "{\"version\":%d,\"file\":%s,\"loaded_at_ms\":%d,\"load_ms\":%.3f,"
+                        + "\"reloads\":%d,\"failed_reloads\":%d,\"last_error\":%s}",
+                version.getVersion(), filePath == null ? "null" : Json.Quote(filePath.toString()),
+                version.getLoadedAtMillis(), version.getLoadMillis(), getReloadsNumber(), getFailedReloadsNumber(),
+                lastError == null ? "null" : Json.Quote(lastError));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        watcher.interrupt();
+        watcher = null;
+    }
+}
@@ -0,0 +1,218 @@
+package fr.simpleneuralnetwork.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the outputs predicted for inputs already seen, so that duplicate inputs skip the forward pass.
+ * <p>
+ * An input is identified by a 128-bit hash of the bits of its values, without keeping a copy of it:
+ * two different inputs only get the same outputs if both 64-bit halves of their hashes collide.
+ * The entries are spread over {@link #SEGMENTS} segments with their own lock, each evicting its least
+ * recently used entry once full. Entries belong to a model version: as soon as a newer version is used,
+ * the whole cache is cleared.
+ */
+public final class PredictionCache {
+
+    public static final int SEGMENTS = 16;
+
+    private static final class Key {
+        final long hash;
+        final long check;
+
+        Key(long hash, long check) {
+            this.hash = hash;
+            this.check = check;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && key.hash == hash && key.check == check;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    // Entries in access order, so the first one is the least recently used. Guarded by the segment itself.
+    private static final class Segment {
+        final Map<Key, double[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+        final int capacity;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    private final int capacity;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private volatile long version = Long.MIN_VALUE;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Keeps at most capacity entries, rounded up to a multiple of the number of segments.
+     */
+    public PredictionCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the cache must be at least 1.");
+        }
+        this.capacity = capacity;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment((capacity + SEGMENTS - 1) / SEGMENTS);
+        }
+    }
+
+    /**
+     * The outputs cached for this input with this model version, or null.
+     */
+    public double[] Get(long modelVersion, double[] input) {
+        if (!CheckVersion(modelVersion)) {
+            misses.increment();
+            return null;
+        }
+
+        Key key = KeyOf(input);
+        Segment segment = SegmentOf(key);
+        double[] outputs;
+        synchronized (segment) {
+            outputs = segment.entries.get(key);
+        }
+
+        if (outputs != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return outputs;
+    }
+
+    /**
+     * Caches the outputs predicted by this model version. The array is kept as it is, so it must not be modified.
+     * Outputs of a version older than the cached ones are dropped.
+     */
+    public void Put(long modelVersion, double[] input, double[] outputs) {
+        if (!CheckVersion(modelVersion)) {
+            return;
+        }
+
+        Key key = KeyOf(input);
+        Segment segment = SegmentOf(key);
+        synchronized (segment) {
+            segment.entries.put(key, outputs);
+            if (segment.entries.size() > segment.capacity) {
+                Iterator<Key> eldest = segment.entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Clears the cache if the version is newer than its entries, and returns whether they are of this version.
+     */
+    private boolean CheckVersion(long modelVersion) {
+        if (modelVersion == version) {
+            return true;
+        }
+        synchronized (this) {
+            if (modelVersion > version) {
+                if (version != Long.MIN_VALUE) {
+                    invalidations.increment();
+                }
+                Clear();
+                version = modelVersion;
+            }
+            return modelVersion == version;
+        }
+    }
+
+    public void Clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+            }
+        }
+    }
+
+    private Segment SegmentOf(Key key) {
+        return segments[(int) (key.hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    // Two independent 64-bit hashes of the bits of the values, each finalized like SplitMix64.
+    private static Key KeyOf(double[] input) {
+        long hash = 0x9E3779B97F4A7C15L ^ input.length;
+        long check = 0xC2B2AE3D27D4EB4FL ^ input.length;
+
+        for (double value : input) {
+            long bits = Double.doubleToLongBits(value);
+            hash = (hash ^ bits) * 0xBF58476D1CE4E5B9L;
+            hash ^= hash >>> 31;
+            check = (check + bits) * 0x94D049BB133111EBL;
+            check ^= check >>> 29;
+        }
+        return new Key(Mix(hash), Mix(check));
+    }
+
+    private static long Mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitsNumber() {
+        return hits.sum();
+    }
+
+    public long getMissesNumber() {
+        return misses.sum();
+    }
+
+    public long getEvictionsNumber() {
+        return evictions.sum();
+    }
+
+    /**
+     * Number of times the cache was cleared because a new model version was served.
+     */
+    public long getInvalidationsNumber() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Share of the lookups that found cached outputs, between 0 and 1.
+     */
+    public double getHitRate() {
+        long lookups = hits.sum() + misses.sum();
+        return lookups == 0 ? 0 : hits.sum() / (double) lookups;
+    }
+
+    String ToJson() {
+        return String.format(Locale.ROOT, "{\"capacity\":%d,\"size\":%d,\"hits\":%d,\"misses\":%d,\"hit_rate\":%.4f,"
+                        + "\"evictions\":%d,\"invalidations\":%d}",
+                capacity, getSize(), getHitsNumber(), getMissesNumber(), getHitRate(), getEvictionsNumber(),
+                getInvalidationsNumber());
+    }
+}
@@ -0,0 +1,356 @@
+package fr.simpleneuralnetwork.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.simpleneuralnetwork.model.IPredictionModel;
+import fr.simpleneuralnetwork.model.InferenceModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * HTTP/JSON prediction server on the JDK's built-in server, with one virtual thread per request.
+ * <p>
+ * Endpoints:
+ * <pre>
+ * POST /predict   {"input": [0.1, ...]}          returns {"class": 3, "outputs": [...]}
+ *                 {"inputs": [[0.1, ...], ...]}  returns {"classes": [...], "outputs": [[...], ...]}
+ * GET  /metrics   request counts, throughput, average batch size, latency percentiles, served model version
+ *                 and cache hits, misses and evictions
+ * GET  /health    {"status": "ok"}
+ * </pre>
+ * The samples of concurrent requests are predicted together by a {@link MicroBatcher}, in batches of at
+ * most maxBatchSize samples, waiting at most maxWaitMicros for a batch to fill up.
+ * A max batch size of 1 predicts every sample on its own. A request whose samples are not predicted within
+ * the timeout is answered 503.
+ * The model comes from a {@link ModelRegistry}, which can swap in a new version while the server runs.
+ * With a cache size set, the samples already predicted by the current version are answered by a
+ * {@link PredictionCache} without going through the batcher.
+ */
+public class PredictionServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    public static final long DEFAULT_MAX_WAIT_MICROS = 2000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    private final ModelRegistry registry;
+    private final int port;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private long maxWaitMicros = DEFAULT_MAX_WAIT_MICROS;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private PredictionCache cache;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private MicroBatcher batcher;
+
+    /**
+     * The port 0 picks any free port, see {@link #getPort()} once started.
+     */
+    public PredictionServer(IPredictionModel model, int port) {
+        this(new ModelRegistry(model), port);
+    }
+
+    /**
+     * Serves the model of the registry, and whichever model it swaps in later.
+     */
+    public PredictionServer(ModelRegistry registry, int port) {
+        this.registry = registry;
+        this.port = port;
+    }
+
+    public ModelRegistry getRegistry() {
+        return registry;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The max batch size must be at least 1.");
+        }
+        CheckNotStarted();
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getMaxWaitMicros() {
+        return maxWaitMicros;
+    }
+
+    public void setMaxWaitMicros(long maxWaitMicros) {
+        if (maxWaitMicros < 0) {
+            throw new IllegalArgumentException("The max wait time cannot be negative.");
+        }
+        CheckNotStarted();
+        this.maxWaitMicros = maxWaitMicros;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Answers 503 to a request whose samples are not all predicted after this time.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        if (timeoutMillis < 1) {
+            throw new IllegalArgumentException("The timeout must be at least 1 millisecond.");
+        }
+        CheckNotStarted();
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * The cache of the predicted outputs, or null when it is disabled.
+     */
+    public PredictionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Caches the outputs of up to cacheSize distinct inputs, or disables the cache with 0 (the default).
+     */
+    public void setCacheSize(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("The cache size cannot be negative.");
+        }
+        CheckNotStarted();
+        this.cache = cacheSize > 0 ? new PredictionCache(cacheSize) : null;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The port the server listens on, once started.
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private void CheckNotStarted() {
+        if (server != null) {
+            throw new IllegalStateException("The server is already started.");
+        }
+    }
+
+    public void Start() throws IOException {
+        CheckNotStarted();
+        batcher = new MicroBatcher(registry, maxBatchSize, TimeUnit.MICROSECONDS.toNanos(maxWaitMicros), metrics);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/predict", this::HandlePredict);
+        server.createContext("/metrics", exchange -> HandleGet(exchange, metrics.ToJson(registry, cache)));
+        server.createContext("/health", exchange -> HandleGet(exchange, "{\"status\":\"ok\"}"));
+        server.setExecutor(executor);
+        server.start();
+        metrics.Reset();
+    }
+
+    /**
+     * Stops accepting requests, lets the ongoing ones finish for up to a second, then stops the batcher.
+     */
+    public void Stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        batcher.close();
+        executor.shutdown();
+        server = null;
+    }
+
+    @Override
+    public void close() {
+        Stop();
+    }
+
+    private void HandlePredict(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            Respond(exchange, 405, Error("Use POST with a JSON body."));
+            return;
+        }
+
+        double[][] inputs;
+        boolean single;
+        try (InputStream body = exchange.getRequestBody()) {
+            Object request = Json.Parse(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            if (!(request instanceof Map<?, ?> fields) || fields.containsKey("input") == fields.containsKey("inputs")) {
+                throw new IllegalArgumentException("Expected an object with either \"input\" or \"inputs\".");
+            }
+            single = fields.containsKey("input");
+            inputs = single ? new double[][]{Json.ToArray(fields.get("input"), "input")} : ToInputs(fields.get("inputs"));
+            CheckFeatures(inputs);
+        } catch (IllegalArgumentException e) {
+            metrics.RecordError();
+            Respond(exchange, 400, Error(e.getMessage()));
+            return;
+        }
+
+        double[][] outputs;
+        try {
+            outputs = Predict(inputs);
+        } catch (ExecutionException e) {
+            metrics.RecordError();
+            Respond(exchange, 500, Error(e.getCause().toString()));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metrics.RecordError();
+            Respond(exchange, 503, Error("Interrupted."));
+            return;
+        } catch (TimeoutException e) {
+            metrics.RecordError();
+            Respond(exchange, 503, Error("The prediction took more than " + timeoutMillis + " ms."));
+            return;
+        }
+
+        Respond(exchange, 200, single ? SingleResponse(outputs[0]) : BatchResponse(outputs));
+        metrics.RecordRequest(System.nanoTime() - start, inputs.length);
+    }
+
+    private double[][] ToInputs(Object value) {
+        if (!(value instanceof List<?> rows) || rows.isEmpty()) {
+            throw new IllegalArgumentException("\"inputs\" must be a non-empty array of arrays of numbers.");
+        }
+        double[][] inputs = new double[rows.size()][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = Json.ToArray(rows.get(i), "inputs");
+        }
+        return inputs;
+    }
+
+    private void CheckFeatures(double[][] inputs) {
+        int featuresNumber = registry.getModel().getFeaturesNumber();
+        for (double[] input : inputs) {
+            if (input.length != featuresNumber) {
+                throw new IllegalArgumentException("Expected " + featuresNumber + " features, got " + input.length + ".");
+            }
+        }
+    }
+
+    // Only the samples missing from the cache are queued for the batcher, and all of them share the timeout.
+    private double[][] Predict(double[][] inputs) throws ExecutionException, InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long version = registry.getVersion();
+        double[][] outputs = new double[inputs.length][];
+        List<CompletableFuture<double[]>> futures = new ArrayList<>(inputs.length);
+        for (int i = 0; i < inputs.length; i++) {
+            outputs[i] = cache != null ? cache.Get(version, inputs[i]) : null;
+            futures.add(outputs[i] == null ? batcher.Submit(inputs[i]) : null);
+        }
+
+        for (int i = 0; i < inputs.length; i++) {
+            if (futures.get(i) != null) {
+                outputs[i] = futures.get(i).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (cache != null) {
+                    cache.Put(version, inputs[i], outputs[i]);
+                }
+            }
+        }
+        return outputs;
+    }
+
+    private static String SingleResponse(double[] outputs) {
+        StringBuilder builder = new StringBuilder("{\"class\":");
+        Json.AppendNumber(builder, InferenceModel.OutputClass(outputs));
+        builder.append(",\"outputs\":");
+        Json.AppendArray(builder, outputs);
+        return builder.append('}').toString();
+    }
+
+    private static String BatchResponse(double[][] outputs) {
+        double[] classes = new double[outputs.length];
+        for (int i = 0; i < outputs.length; i++) {
+            classes[i] = InferenceModel.OutputClass(outputs[i]);
+        }
+
+        StringBuilder builder = new StringBuilder("{\"classes\":");
+        Json.AppendArray(builder, classes);
+        builder.append(",\"outputs\":[");
+        for (int i = 0; i < outputs.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            Json.AppendArray(builder, outputs[i]);
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static String Error(String message) {
+        return "{\"error\":" + Json.Quote(message) + "}";
+    }
+
+    private static void HandleGet(HttpExchange exchange, String body) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            Respond(exchange, 405, Error("Use GET."));
+            return;
+        }
+        Respond(exchange, 200, body);
+    }
+
+    private static void Respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream stream = exchange.getResponseBody()) {
+            stream.write(bytes);
+        }
+    }
+
+    /**
+     * Usage: PredictionServer &lt;model file&gt; [port] [max batch size] [max wait in microseconds] [cache size]
+     * <p>
+     * The model file may be in any format of NeuralNetwork.LoadFromFile, or a quantized model file.
+     * It is reloaded whenever it changes.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PredictionServer <model file> [port] [max batch size] [max wait in microseconds] [cache size]");
+            System.exit(-1);
+        }
+
+        ModelRegistry registry = new ModelRegistry(args[0]);
+        registry.StartWatching();
+
+        PredictionServer server = new PredictionServer(registry, args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+        if (args.length > 2) {
+            server.setMaxBatchSize(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            server.setMaxWaitMicros(Long.parseLong(args[3]));
+        }
+        if (args.length > 4) {
+            server.setCacheSize(Integer.parseInt(args[4]));
+        }
+        server.Start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.Stop();
+            registry.close();
+        }));
+
+        System.out.println("Serving " + args[0] + " on http://localhost:" + server.getPort()
+                + "/predict (batches of up to " + server.getMaxBatchSize() + ", waiting up to "
+                + server.getMaxWaitMicros() + " us" + (server.getCache() != null
+                ? ", caching up to " + server.getCache().getCapacity() + " inputs" : "") + ")");
+    }
+}
@@ -0,0 +1,128 @@
+package fr.simpleneuralnetwork.server;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters and latencies of a {@link PredictionServer}.
+ * <p>
+ * The percentiles are computed over the latencies of the last {@link #WINDOW} requests, the throughput
+ * since the server started or the metrics were last reset. Recording is lock-free, so it can be done
+ * from every request thread.
+ */
+public final class ServerMetrics {
+
+    public static final int WINDOW = 1 << 16;
+
+    private final long[] latencies = new long[WINDOW];
+    private final AtomicLong latenciesNumber = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedSamples = new LongAdder();
+    private volatile long startNanos = System.nanoTime();
+
+    void RecordRequest(long latencyNanos, int samplesNumber) {
+        requests.increment();
+        samples.add(samplesNumber);
+        latencies[(int) (latenciesNumber.getAndIncrement() & (WINDOW - 1))] = latencyNanos;
+    }
+
+    void RecordError() {
+        errors.increment();
+    }
+
+    void RecordBatch(int samplesNumber) {
+        batches.increment();
+        batchedSamples.add(samplesNumber);
+    }
+
+    public void Reset() {
+        requests.reset();
+        errors.reset();
+        samples.reset();
+        batches.reset();
+        batchedSamples.reset();
+        latenciesNumber.set(0);
+        startNanos = System.nanoTime();
+    }
+
+    public long getRequestsNumber() {
+        return requests.sum();
+    }
+
+    public long getErrorsNumber() {
+        return errors.sum();
+    }
+
+    public long getSamplesNumber() {
+        return samples.sum();
+    }
+
+    public double getRequestsPerSecond() {
+        return requests.sum() * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    public double getSamplesPerSecond() {
+        return samples.sum() * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Average number of samples per forward pass.
+     */
+    public double getAverageBatchSize() {
+        long batchesNumber = batches.sum();
+        return batchesNumber == 0 ? 0 : batchedSamples.sum() / (double) batchesNumber;
+    }
+
+    /**
+     * Latency of the given percentile, between 0 and 100, in milliseconds, or 0 before the first request.
+     */
+    public double getLatencyMillis(double percentile) {
+        return Percentile(SortedLatencies(), percentile);
+    }
+
+    private long[] SortedLatencies() {
+        long[] window = Arrays.copyOf(latencies, (int) Math.min(latenciesNumber.get(), WINDOW));
+        Arrays.sort(window);
+        return window;
+    }
+
+    private static double Percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, Math.min(sortedLatencies.length - 1, index))] / 1e6;
+    }
+
+    public String ToJson() {
+        return ToJson(null, null);
+    }
+
+    /**
+     * With the version of the model served by the registry and the cache counters, when there are ones.
+     */
+    String ToJson(ModelRegistry registry, PredictionCache cache) {
+        long[] sortedLatencies = SortedLatencies();
+        return String.format(Locale.ROOT, "{\"requests\":%d,\"errors\":%d,\"samples\":%d,"
+                        + "\"requests_per_second\":%.1f,\"samples_per_second\":%.1f,\"average_batch_size\":%.2f,"
+                        + "\"latency_ms\":{\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f}%s%s}",
+                getRequestsNumber(), getErrorsNumber(), getSamplesNumber(), getRequestsPerSecond(),
+                getSamplesPerSecond(), getAverageBatchSize(), Percentile(sortedLatencies, 50),
+                Percentile(sortedLatencies, 90), Percentile(sortedLatencies, 99), Percentile(sortedLatencies, 100),
+                registry != null ? ",\"model\":" + registry.ToJson() : "",
+                cache != null ? ",\"cache\":" + cache.ToJson() : "");
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d requests (%d errors), %.1f requests/s, %.1f samples/s, "
+                        + "batches of %.2f, latency p50 %.3f ms, p99 %.3f ms",
+                getRequestsNumber(), getErrorsNumber(), getRequestsPerSecond(), getSamplesPerSecond(),
+                getAverageBatchSize(), Percentile(SortedLatencies(), 50), Percentile(SortedLatencies(), 99));
+    }
+}
@@ -1,8 +1,11 @@
 package fr.simpleneuralnetwork.tests;
 
+import fr.simpleneuralnetwork.data.ByteDataset;
+import fr.simpleneuralnetwork.data.IdxDataset;
 import fr.simpleneuralnetwork.model.NeuralNetwork;
 
 import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Arrays;
@@ -72,12 +75,14 @@ public class MNISTLoader {
         xxxx     unsigned byte   ??               pixel
          */
         try (BufferedInputStream buffer = new BufferedInputStream(new FileInputStream(filePath))) {
-            buffer.skip(16);
+            buffer.skipNBytes(16);
             int imageSize = numberOfRows * numberOfColumns;
             byte[][] images = new byte[numberOfImages][imageSize];
 
             for (int i = 0; i < numberOfImages; i++) {
-                buffer.read(images[i]);
+                if (buffer.readNBytes(images[i], 0, imageSize) != imageSize) {
+                    throw new EOFException("Expected " + numberOfImages + " images in " + filePath + ", got " + i + ".");
+                }
             }
 
             return NormalizeImages(images);
@@ -93,7 +98,7 @@ public class MNISTLoader {
         xxxx     unsigned byte   ??               label
          */
         try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(filePath))) {
-            bis.skip(8);
+            bis.skipNBytes(8);
 
             double[] labels = new double[numberOfExamples];
             for (int i = 0; i < numberOfExamples; i++) {
@@ -131,6 +136,25 @@ public class MNISTLoader {
         return null;
     }
 
+    public static IdxDataset getTrainDataset() throws IOException {
+        return new IdxDataset(path + "train-images.idx3-ubyte", path + "train-labels.idx1-ubyte");
+    }
+
+    public static IdxDataset getTestDataset() throws IOException {
+        return new IdxDataset(path + "t10k-images.idx3-ubyte", path + "t10k-labels.idx1-ubyte");
+    }
+
+    /**
+     * The training set in memory, one byte per pixel and label.
+     */
+    public static ByteDataset getTrainBytes() throws IOException {
+        return getTrainDataset().ToByteDataset();
+    }
+
+    public static ByteDataset getTestBytes() throws IOException {
+        return getTestDataset().ToByteDataset();
+    }
+
     public static double[][] getTestData() throws IOException {
         String filePath = path + "t10k-images.idx3-ubyte";
         int[] headerInfos = readImagesHeader(filePath);
@@ -162,25 +186,18 @@ public class MNISTLoader {
     }
 
     public static void main(String[] args) throws IOException {
-        double[][] trainData = getTrainData();
-        double[] trainLabels = getTrainLabels();
-        double[][] testData = getTestData();
-        double[] testLabels = getTestLabels();
-
-        if (trainData == null || trainLabels == null || testData == null || testLabels == null) {
-            return;
-        }
+        ByteDataset trainDataset = getTrainBytes();
+        ByteDataset testDataset = getTestBytes();
 
-        System.out.println("trainData: length=" + trainData.length + " features=" + trainData[0].length);
-        System.out.println("testData: length=" + testData.length + " features=" + testData[0].length);
-        System.out.println("trainLabels: length=" + trainLabels.length);
-        System.out.println("testLabels: length=" + testLabels.length);
+        System.out.println("trainData: length=" + trainDataset.getSize() + " features=" + trainDataset.getFeaturesNumber());
+        System.out.println("testData: length=" + testDataset.getSize() + " features=" + testDataset.getFeaturesNumber());
 
         int[] layerSizes = new int[]{784, 100, 10};
 
         NeuralNetwork nn = new NeuralNetwork(layerSizes, "cross_entropy", "sigmoid", "softmax");
-        nn.Train(trainData, trainLabels, 1, 10, 64, 1E-7);
-        nn.WriteInFile("src/main/resources/model1.txt");
+        nn.setShuffle(true);
+        nn.Train(trainDataset, 1, 10, 64, 1E-7);
+        nn.WriteInFile("src/main/resources/model1.bin");
 
 /*        NeuralNetwork nn = NeuralNetwork.LoadFromFile("src/main/resources/model1.txt");
         assert nn != null;*/
@@ -0,0 +1,100 @@
+package fr.simpleneuralnetwork.tests;
+
+import fr.simpleneuralnetwork.model.NeuralNetwork;
+import fr.simpleneuralnetwork.model.QuantizedModel;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares a trained model with its 8-bit quantized version on the MNIST test set: accuracy, agreement
+ * between the two, output error, size and prediction speed.
+ * Takes the model file as first argument, by default src/main/resources/model1.bin, the one MNISTLoader trains.
+ * Run with --add-modules jdk.incubator.vector to use the SIMD kernels.
+ */
+public class QuantizationReport {
+
+    private static final int TIMED_RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        String modelPath = args.length > 0 ? args[0] : "src/main/resources/model1.bin";
+        double[][] testData = MNISTLoader.getTestData();
+        double[] testLabels = MNISTLoader.getTestLabels();
+        NeuralNetwork network = NeuralNetwork.LoadFromFile(modelPath);
+
+        if (testData == null || testLabels == null || network == null) {
+            return;
+        }
+
+        QuantizedModel quantized = network.ToQuantizedModel();
+        File floatFile = File.createTempFile("model", ".bin");
+        File quantizedFile = File.createTempFile("model", ".q8");
+        floatFile.deleteOnExit();
+        quantizedFile.deleteOnExit();
+        network.WriteInFile(floatFile.getPath());
+        quantized.WriteInFile(quantizedFile.getPath());
+        QuantizedModel reloaded = QuantizedModel.LoadFromFile(quantizedFile.getPath());
+
+        double[][] outputs = network.PredictAll(testData);
+        double[][] quantizedOutputs = quantized.PredictAll(testData);
+        double[] classes = network.PredictAllClasses(testData);
+        double[] quantizedClasses = quantized.PredictAllClasses(testData);
+        double[] reloadedClasses = reloaded.PredictAllClasses(testData);
+
+        int correct = 0, quantizedCorrect = 0, agreements = 0, reloadedAgreements = 0;
+        double maxError = 0, totalError = 0;
+        for (int i = 0; i < testData.length; i++) {
+            correct += classes[i] == testLabels[i] ? 1 : 0;
+            quantizedCorrect += quantizedClasses[i] == testLabels[i] ? 1 : 0;
+            agreements += classes[i] == quantizedClasses[i] ? 1 : 0;
+            reloadedAgreements += reloadedClasses[i] == quantizedClasses[i] ? 1 : 0;
+            for (int j = 0; j < outputs[i].length; j++) {
+                double error = Math.abs(outputs[i][j] - quantizedOutputs[i][j]);
+                maxError = Math.max(maxError, error);
+                totalError += error;
+            }
+        }
+
+        long parametersBytes = (long) network.getWeightsNumber() * network.getPrecision().getBytes();
+        System.out.printf("Model %s, %d test samples%n", modelPath, testData.length);
+        System.out.printf("%-22s %10s %10s%n", "", network.getPrecision(), "INT8");
+        System.out.printf("%-22s %9.2f%% %9.2f%%%n", "Accuracy",
+                100.0 * correct / testData.length, 100.0 * quantizedCorrect / testData.length);
+        System.out.printf("%-22s %10d %10d (%.1fx smaller)%n", "Parameters (bytes)",
+                parametersBytes, quantized.getParametersBytes(), parametersBytes / (double) quantized.getParametersBytes());
+        System.out.printf("%-22s %10d %10d%n", "File (bytes)", floatFile.length(), quantizedFile.length());
+        System.out.printf("%-22s %10.0f %10.0f%n", "Batch (samples/s)",
+                SamplesPerSecond(() -> network.PredictAllClasses(testData), testData.length),
+                SamplesPerSecond(() -> quantized.PredictAllClasses(testData), testData.length));
+        System.out.printf("%-22s %10.0f %10.0f%n", "Single (samples/s)",
+                SamplesPerSecond(() -> PredictOneByOne(network, testData), testData.length),
+                SamplesPerSecond(() -> PredictOneByOne(quantized, testData), testData.length));
+        System.out.printf("Same class for %.2f%% of the samples, output error max %.2e, mean %.2e%n",
+                100.0 * agreements / testData.length, maxError, totalError / (testData.length * outputs[0].length));
+        System.out.printf("Reloaded quantized file agrees on %d/%d samples%n", reloadedAgreements, testData.length);
+    }
+
+    private static void PredictOneByOne(NeuralNetwork network, double[][] inputs) {
+        for (double[] input : inputs) {
+            network.PredictClass(input);
+        }
+    }
+
+    private static void PredictOneByOne(QuantizedModel model, double[][] inputs) {
+        for (double[] input : inputs) {
+            model.PredictClass(input);
+        }
+    }
+
+    // Best of a few runs, after a first one to warm up the JIT.
+    private static double SamplesPerSecond(Runnable run, int samples) {
+        run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return samples * 1e9 / best;
+    }
+}
@@ -0,0 +1,244 @@
+package fr.simpleneuralnetwork.tests;
+
+import fr.simpleneuralnetwork.model.IActivation;
+import fr.simpleneuralnetwork.model.ILoss;
+import fr.simpleneuralnetwork.model.IOptimizer;
+import fr.simpleneuralnetwork.model.Layer;
+import fr.simpleneuralnetwork.model.LayerWorkspace;
+import fr.simpleneuralnetwork.model.Activations.ReLU;
+import fr.simpleneuralnetwork.model.Activations.SiLU;
+import fr.simpleneuralnetwork.model.Activations.Sigmoid;
+import fr.simpleneuralnetwork.model.Activations.SoftMax;
+import fr.simpleneuralnetwork.model.Losses.CrossEntropy;
+import fr.simpleneuralnetwork.model.Losses.MeanSquaredError;
+import fr.simpleneuralnetwork.model.Optimizers.Adam;
+import fr.simpleneuralnetwork.model.Optimizers.Momentum;
+import fr.simpleneuralnetwork.model.Optimizers.RMSProp;
+import fr.simpleneuralnetwork.model.Optimizers.SGD;
+import fr.simpleneuralnetwork.utils.Gemm;
+import fr.simpleneuralnetwork.utils.Precision;
+import fr.simpleneuralnetwork.utils.QuantizedTensor;
+import fr.simpleneuralnetwork.utils.Tensor;
+import fr.simpleneuralnetwork.utils.Vectorization;
+
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Runs every SIMD kernel and its scalar fallback on the same random tensors and checks that they agree.
+ * Run with --add-modules jdk.incubator.vector.
+ */
+public class VectorKernelsCheck {
+
+    private static final int ROWS = 37;
+    private static final int COLS = 13;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        if (!Vectorization.IsAvailable()) {
+            System.err.println("The jdk.incubator.vector module is not available, run with --add-modules jdk.incubator.vector.");
+            System.exit(-1);
+        }
+
+        for (Precision precision : Precision.values()) {
+            for (boolean contiguous : new boolean[]{true, false}) {
+                String name = precision + (contiguous ? " contiguous" : " strided");
+                CheckActivations(name, precision, contiguous);
+                CheckLosses(name, precision, contiguous);
+            }
+            for (IOptimizer optimizer : new IOptimizer[]{new SGD(), new Momentum(), new RMSProp(), new Adam()}) {
+                CheckOptimizer(precision, optimizer);
+            }
+            CheckMultTransB(precision);
+        }
+        CheckQuantizedMultTransB();
+        Vectorization.setEnabled(true);
+
+        System.out.println(failures == 0 ? "All kernels match." : failures + " kernel(s) differ.");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void CheckActivations(String name, Precision precision, boolean contiguous) {
+        Random rand = new Random(42);
+        Tensor linearInputs = RandomTensor(rand, precision, contiguous, -6, 6);
+        Tensor gradients = RandomTensor(rand, precision, contiguous, -1, 1);
+        linearInputs.set(0, 0, 0);
+
+        for (IActivation activation : new IActivation[]{new Sigmoid(), new ReLU(), new SiLU(), new SoftMax()}) {
+            String kernel = name + " " + activation.GetName();
+
+            Compare(kernel + " apply", precision, vectorized -> {
+                Tensor result = Like(linearInputs, contiguous);
+                activation.ApplyInto(linearInputs, result);
+                return result;
+            });
+
+            if (activation instanceof SoftMax) {
+                continue;
+            }
+
+            Compare(kernel + " derivative", precision, vectorized -> {
+                Tensor result = Like(linearInputs, contiguous);
+                activation.DerivativeInto(linearInputs, result);
+                return result;
+            });
+
+            Compare(kernel + " chain", precision, vectorized -> {
+                Tensor outputs = Like(linearInputs, contiguous);
+                activation.ApplyInto(linearInputs, outputs);
+                Tensor result = Like(gradients, contiguous);
+                result.CopyRowsFrom(gradients, 0);
+                activation.ChainDerivative(linearInputs, outputs, result);
+                return result;
+            });
+        }
+    }
+
+    private static void CheckLosses(String name, Precision precision, boolean contiguous) {
+        Random rand = new Random(7);
+        Tensor outputs = RandomTensor(rand, precision, contiguous, 0, 1);
+        Tensor expectedOutputs = Like(outputs, contiguous);
+        for (int i = 0; i < ROWS; i++) {
+            expectedOutputs.set(i, rand.nextInt(COLS), 1);
+        }
+
+        for (ILoss loss : new ILoss[]{new CrossEntropy(), new MeanSquaredError()}) {
+            Compare(name + " " + loss.GetName() + " loss", precision, vectorized -> {
+                Tensor result = new Tensor(1, 1);
+                result.set(0, 0, loss.GlobalLoss(outputs, expectedOutputs));
+                return result;
+            });
+
+            Compare(name + " " + loss.GetName() + " derivative", precision, vectorized -> {
+                Tensor result = Like(outputs, contiguous);
+                loss.DerivativeInto(outputs, expectedOutputs, result);
+                return result;
+            });
+        }
+    }
+
+    private static void CheckOptimizer(Precision precision, IOptimizer optimizer) {
+        Compare(precision + " " + optimizer.GetName() + " step", precision, vectorized -> {
+            Random rand = new Random(3);
+            Tensor weights = RandomTensor(rand, precision, true, -1, 1);
+            Tensor biases = new Tensor(1, ROWS, precision);
+            Layer layer = new Layer(weights, biases, COLS, ROWS, "sigmoid");
+            LayerWorkspace workspace = new LayerWorkspace(1, COLS, ROWS, precision);
+            for (int j = 0; j < ROWS; j++) {
+                biases.set(0, j, rand.nextDouble());
+            }
+
+            // A few steps, so that the optimizer state is used.
+            for (int step = 1; step <= 3; step++) {
+                workspace.getWeightsGradients().CopyRowsFrom(RandomTensor(rand, precision, true, -5, 5), 0);
+                for (int j = 0; j < ROWS; j++) {
+                    workspace.getBiasesGradients().set(0, j, rand.nextDouble());
+                }
+                layer.UpdateWeights(optimizer, 0.1, 32, step, workspace);
+            }
+            return weights;
+        });
+    }
+
+    private static void CheckMultTransB(Precision precision) {
+        Random rand = new Random(11);
+        int features = 100;
+        Tensor inputs = new Tensor(ROWS, features, precision);
+        Tensor weights = Strided(precision, 30, features, features + 3);
+        Tensor biases = new Tensor(1, 30, precision);
+        for (int j = 0; j < features; j++) {
+            for (int i = 0; i < ROWS; i++) {
+                inputs.set(i, j, rand.nextDouble() * 2 - 1);
+            }
+            for (int i = 0; i < 30; i++) {
+                weights.set(i, j, rand.nextDouble() * 2 - 1);
+                biases.set(0, i, rand.nextDouble());
+            }
+        }
+
+        Compare(precision + " forward product", precision, vectorized -> {
+            Tensor result = new Tensor(ROWS, 30, precision);
+            Gemm.MultTransB(inputs, weights, biases, result);
+            return result;
+        });
+    }
+
+    private static void CheckQuantizedMultTransB() {
+        Random rand = new Random(13);
+        int features = 100;
+        Tensor inputs = new Tensor(ROWS, features, Precision.FLOAT);
+        Tensor weights = new Tensor(30, features, Precision.FLOAT);
+        Tensor biases = new Tensor(1, 30, Precision.FLOAT);
+        for (int j = 0; j < features; j++) {
+            for (int i = 0; i < ROWS; i++) {
+                inputs.set(i, j, rand.nextDouble() * 2 - 1);
+            }
+            for (int i = 0; i < 30; i++) {
+                weights.set(i, j, rand.nextDouble() * 2 - 1);
+                biases.set(0, i, rand.nextDouble());
+            }
+        }
+        QuantizedTensor quantizedInputs = QuantizedTensor.Quantize(inputs);
+        QuantizedTensor quantizedWeights = QuantizedTensor.Quantize(weights);
+
+        Compare("INT8 forward product", Precision.FLOAT, vectorized -> {
+            Tensor result = new Tensor(ROWS, 30, Precision.FLOAT);
+            Gemm.MultTransB(quantizedInputs, quantizedWeights, biases, result);
+            return result;
+        });
+    }
+
+    /**
+     * Runs the kernel once with the scalar loops and once with the SIMD kernels, and compares the results.
+     */
+    private static void Compare(String kernel, Precision precision, Function<Boolean, Tensor> run) {
+        Vectorization.setEnabled(false);
+        Tensor scalar = run.apply(false);
+        Vectorization.setEnabled(true);
+        Tensor vector = run.apply(true);
+
+        double tolerance = precision == Precision.DOUBLE ? 1e-12 : 1e-5;
+        double maxError = 0;
+        for (int i = 0; i < scalar.getRows(); i++) {
+            for (int j = 0; j < scalar.getCols(); j++) {
+                double error = Math.abs(scalar.get(i, j) - vector.get(i, j)) / Math.max(1, Math.abs(scalar.get(i, j)));
+                maxError = Math.max(maxError, Double.isNaN(error) ? Double.POSITIVE_INFINITY : error);
+            }
+        }
+
+        boolean matches = maxError <= tolerance;
+        if (!matches) {
+            failures++;
+        }
+        System.out.printf("%-45s %s (max relative error %.2e)%n", kernel, matches ? "ok" : "DIFFERS", maxError);
+    }
+
+    private static Tensor RandomTensor(Random rand, Precision precision, boolean contiguous, double min, double max) {
+        Tensor tensor = NewTensor(precision, contiguous);
+        for (int i = 0; i < ROWS; i++) {
+            for (int j = 0; j < COLS; j++) {
+                tensor.set(i, j, min + (max - min) * rand.nextDouble());
+            }
+        }
+        return tensor;
+    }
+
+    private static Tensor Like(Tensor tensor, boolean contiguous) {
+        return NewTensor(tensor.getPrecision(), contiguous);
+    }
+
+    private static Tensor NewTensor(Precision precision, boolean contiguous) {
+        return Strided(precision, ROWS, COLS, contiguous ? COLS : COLS + 3);
+    }
+
+    // With a stride larger than the number of columns, the tensor views the first columns of a wider one.
+    private static Tensor Strided(Precision precision, int rows, int cols, int stride) {
+        if (precision == Precision.FLOAT) {
+            return new Tensor(new float[rows * stride], 0, rows, cols, stride);
+        }
+        return new Tensor(new double[rows * stride], 0, rows, cols, stride);
+    }
+}
@@ -0,0 +1,45 @@
+package fr.simpleneuralnetwork.utils;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes allocated on the heap, with the HotSpot thread allocation counters.
+ */
+public final class Allocations {
+
+    private static final com.sun.management.ThreadMXBean THREADS = FindThreadBean();
+
+    private Allocations() {
+    }
+
+    private static com.sun.management.ThreadMXBean FindThreadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean;
+        }
+        return null;
+    }
+
+    public static boolean IsSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * Returns the bytes allocated so far by every live thread, or -1 when it cannot be measured.
+     * Only the difference between two calls is meaningful.
+     */
+    public static long TotalAllocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getTotalThreadAllocatedBytes();
+    }
+
+    /**
+     * Returns the bytes allocated since {@code start}, a value returned by {@link #TotalAllocatedBytes()}.
+     * Threads that ended in between are no longer counted, so the result is clamped to 0.
+     */
+    public static long Since(long start) {
+        if (start < 0 || THREADS == null) {
+            return -1;
+        }
+        return Math.max(0, THREADS.getTotalThreadAllocatedBytes() - start);
+    }
+}
@@ -0,0 +1,389 @@
+package fr.simpleneuralnetwork.utils;
+
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Cache-blocked matrix products working directly on the flat storage of tensors, in double or float precision.
+ * <p>
+ * The rows of the result are split into tiles. Products large enough to be worth it compute their tiles
+ * in parallel, on the fork/join pool of the calling thread. Each element of the result is accumulated by a
+ * single thread, in increasing order of the inner index, so the results do not depend on the number of threads.
+ */
+public final class Gemm {
+
+    // Rows of the result computed by one task.
+    private static final int ROWS_TILE = 16;
+    // Rows of b kept in cache while a tile of rows of a is multiplied with them, in MultTransB.
+    private static final int B_ROWS_BLOCK = 64;
+    // Columns of the result updated together while going through the inner index, in Mult and MultTransA.
+    private static final int COLS_BLOCK = 256;
+    // Products with fewer multiply-adds than this run on the calling thread only.
+    private static final long PARALLEL_THRESHOLD = 1 << 18;
+
+    private Gemm() {
+    }
+
+    /**
+     * result = a * b, with a [m x k], b [k x n] and result [m x n].
+     */
+    public static void Mult(Tensor a, Tensor b, Tensor result) {
+        CheckInnerDimension(a, a.getCols(), b, b.getRows());
+        CheckShape(result, a.getRows(), b.getCols());
+        CheckPrecision(a, b, result);
+
+        ForEachTile(result.getRows(), (long) a.getRows() * a.getCols() * b.getCols(), tile -> {
+            int from = tile * ROWS_TILE;
+            int to = Math.min(from + ROWS_TILE, result.getRows());
+            if (a.IsFloat()) {
+                MultTileFloat(a, b, result, from, to);
+            } else {
+                MultTile(a, b, result, from, to);
+            }
+        });
+    }
+
+    /**
+     * result = a^T * b, with a [k x m], b [k x n] and result [m x n].
+     */
+    public static void MultTransA(Tensor a, Tensor b, Tensor result) {
+        CheckInnerDimension(a, a.getRows(), b, b.getRows());
+        CheckShape(result, a.getCols(), b.getCols());
+        CheckPrecision(a, b, result);
+
+        ForEachTile(result.getRows(), (long) a.getRows() * a.getCols() * b.getCols(), tile -> {
+            int from = tile * ROWS_TILE;
+            int to = Math.min(from + ROWS_TILE, result.getRows());
+            if (a.IsFloat()) {
+                MultTransATileFloat(a, b, result, from, to);
+            } else {
+                MultTransATile(a, b, result, from, to);
+            }
+        });
+    }
+
+    /**
+     * result = a * b^T, with a [m x k], b [n x k] and result [m x n].
+     */
+    public static void MultTransB(Tensor a, Tensor b, Tensor result) {
+        MultTransB(a, b, null, result);
+    }
+
+    /**
+     * result = a * b^T + bias, with a [m x k], b [n x k], bias [1 x n] added to every row, and result [m x n].
+     * The rows of b are read as they are, so a layer's weights [neurons x features] are used without transposing.
+     */
+    public static void MultTransB(Tensor a, Tensor b, Tensor bias, Tensor result) {
+        CheckInnerDimension(a, a.getCols(), b, b.getCols());
+        CheckShape(result, a.getRows(), b.getRows());
+        CheckPrecision(a, b, result);
+        if (bias != null) {
+            CheckShape(bias, 1, b.getRows());
+            CheckPrecision(a, bias, result);
+        }
+        boolean vectorized = Vectorization.IsEnabled();
+
+        ForEachTile(result.getRows(), (long) a.getRows() * a.getCols() * b.getRows(), tile -> {
+            int from = tile * ROWS_TILE;
+            int to = Math.min(from + ROWS_TILE, result.getRows());
+            for (int block = 0; block < b.getRows(); block += B_ROWS_BLOCK) {
+                int blockEnd = Math.min(block + B_ROWS_BLOCK, b.getRows());
+                if (vectorized) {
+                    VectorKernels.MultTransB(a, b, bias, result, from, to, block, blockEnd);
+                } else if (a.IsFloat()) {
+                    MultTransBBlockFloat(a, b, bias, result, from, to, block, blockEnd);
+                } else {
+                    MultTransBBlock(a, b, bias, result, from, to, block, blockEnd);
+                }
+            }
+        });
+    }
+
+    /**
+     * result = a * b^T + bias on 8-bit rows, with a [m x k], b [n x k], bias [1 x n] and result [m x n] in float.
+     * The dot products are exact 32-bit integer sums, scaled by the scales of the rows of a and b once at the end,
+     * so k must stay under 2^31 / 127^2, about 133 000.
+     */
+    public static void MultTransB(QuantizedTensor a, QuantizedTensor b, Tensor bias, Tensor result) {
+        CheckShape(result, a.getRows(), b.getRows());
+        if (a.getCols() != b.getCols()) {
+            throw new IllegalArgumentException("Cannot multiply [" + a.getRows() + " x " + a.getCols() + "] and ["
+                    + b.getCols() + " x " + b.getRows() + "] quantized tensors.");
+        }
+        if (!result.IsFloat() || (bias != null && !bias.IsFloat())) {
+            throw new IllegalArgumentException("The result and biases of a quantized product must be float tensors.");
+        }
+        if (bias != null) {
+            CheckShape(bias, 1, b.getRows());
+        }
+        boolean vectorized = Vectorization.IsEnabled();
+
+        ForEachTile(result.getRows(), (long) a.getRows() * a.getCols() * b.getRows(), tile -> {
+            int from = tile * ROWS_TILE;
+            int to = Math.min(from + ROWS_TILE, result.getRows());
+            for (int block = 0; block < b.getRows(); block += B_ROWS_BLOCK) {
+                int blockEnd = Math.min(block + B_ROWS_BLOCK, b.getRows());
+                if (vectorized) {
+                    VectorKernels.MultTransB(a, b, bias, result, from, to, block, blockEnd);
+                } else {
+                    MultTransBBlockQuantized(a, b, bias, result, from, to, block, blockEnd);
+                }
+            }
+        });
+    }
+
+    private static void ForEachTile(int rows, long multiplyAdds, IntConsumer tile) {
+        int tilesNumber = (rows + ROWS_TILE - 1) / ROWS_TILE;
+        IntStream tiles = IntStream.range(0, tilesNumber);
+        if (tilesNumber > 1 && multiplyAdds >= PARALLEL_THRESHOLD) {
+            tiles = tiles.parallel();
+        }
+        tiles.forEach(tile);
+    }
+
+    private static void MultTile(Tensor a, Tensor b, Tensor result, int from, int to) {
+        double[] aData = a.getData();
+        double[] bData = b.getData();
+        double[] cData = result.getData();
+        int inner = a.getCols();
+        int cols = b.getCols();
+
+        for (int block = 0; block < cols; block += COLS_BLOCK) {
+            int blockEnd = Math.min(block + COLS_BLOCK, cols);
+            for (int i = from; i < to; i++) {
+                int cRow = result.Index(i, 0);
+                for (int j = block; j < blockEnd; j++) {
+                    cData[cRow + j] = 0;
+                }
+                for (int p = 0; p < inner; p++) {
+                    double aip = aData[a.Index(i, p)];
+                    int bRow = b.Index(p, 0);
+                    for (int j = block; j < blockEnd; j++) {
+                        cData[cRow + j] += aip * bData[bRow + j];
+                    }
+                }
+            }
+        }
+    }
+
+    private static void MultTileFloat(Tensor a, Tensor b, Tensor result, int from, int to) {
+        float[] aData = a.getFloatData();
+        float[] bData = b.getFloatData();
+        float[] cData = result.getFloatData();
+        int inner = a.getCols();
+        int cols = b.getCols();
+
+        for (int block = 0; block < cols; block += COLS_BLOCK) {
+            int blockEnd = Math.min(block + COLS_BLOCK, cols);
+            for (int i = from; i < to; i++) {
+                int cRow = result.Index(i, 0);
+                for (int j = block; j < blockEnd; j++) {
+                    cData[cRow + j] = 0;
+                }
+                for (int p = 0; p < inner; p++) {
+                    float aip = aData[a.Index(i, p)];
+                    int bRow = b.Index(p, 0);
+                    for (int j = block; j < blockEnd; j++) {
+                        cData[cRow + j] += aip * bData[bRow + j];
+                    }
+                }
+            }
+        }
+    }
+
+    private static void MultTransATile(Tensor a, Tensor b, Tensor result, int from, int to) {
+        double[] aData = a.getData();
+        double[] bData = b.getData();
+        double[] cData = result.getData();
+        int cols = b.getCols();
+
+        for (int block = 0; block < cols; block += COLS_BLOCK) {
+            int blockEnd = Math.min(block + COLS_BLOCK, cols);
+            for (int i = from; i < to; i++) {
+                int cRow = result.Index(i, 0);
+                for (int j = block; j < blockEnd; j++) {
+                    cData[cRow + j] = 0;
+                }
+            }
+            for (int p = 0; p < a.getRows(); p++) {
+                int aRow = a.Index(p, 0);
+                int bRow = b.Index(p, 0);
+                for (int i = from; i < to; i++) {
+                    double api = aData[aRow + i];
+                    if (api == 0) {
+                        continue;
+                    }
+                    int cRow = result.Index(i, 0);
+                    for (int j = block; j < blockEnd; j++) {
+                        cData[cRow + j] += api * bData[bRow + j];
+                    }
+                }
+            }
+        }
+    }
+
+    private static void MultTransATileFloat(Tensor a, Tensor b, Tensor result, int from, int to) {
+        float[] aData = a.getFloatData();
+        float[] bData = b.getFloatData();
+        float[] cData = result.getFloatData();
+        int cols = b.getCols();
+
+        for (int block = 0; block < cols; block += COLS_BLOCK) {
+            int blockEnd = Math.min(block + COLS_BLOCK, cols);
+            for (int i = from; i < to; i++) {
+                int cRow = result.Index(i, 0);
+                for (int j = block; j < blockEnd; j++) {
+                    cData[cRow + j] = 0;
+                }
+            }
+            for (int p = 0; p < a.getRows(); p++) {
+                int aRow = a.Index(p, 0);
+                int bRow = b.Index(p, 0);
+                for (int i = from; i < to; i++) {
+                    float api = aData[aRow + i];
+                    if (api == 0) {
+                        continue;
+                    }
+                    int cRow = result.Index(i, 0);
+                    for (int j = block; j < blockEnd; j++) {
+                        cData[cRow + j] += api * bData[bRow + j];
+                    }
+                }
+            }
+        }
+    }
+
+    // Four rows of b at a time, so each element of a is loaded once for four dot products.
+    private static void MultTransBBlock(Tensor a, Tensor b, Tensor bias, Tensor result, int from, int to,
+                                        int block, int blockEnd) {
+        double[] aData = a.getData();
+        double[] bData = b.getData();
+        double[] cData = result.getData();
+        double[] biasData = bias != null ? bias.getData() : null;
+        int biasStart = bias != null ? bias.Index(0, 0) : 0;
+        int inner = a.getCols();
+
+        for (int i = from; i < to; i++) {
+            int aRow = a.Index(i, 0);
+            int cRow = result.Index(i, 0);
+            int j = block;
+            for (; j + 4 <= blockEnd; j += 4) {
+                int b0 = b.Index(j, 0);
+                int b1 = b.Index(j + 1, 0);
+                int b2 = b.Index(j + 2, 0);
+                int b3 = b.Index(j + 3, 0);
+                double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                for (int p = 0; p < inner; p++) {
+                    double aip = aData[aRow + p];
+                    sum0 += aip * bData[b0 + p];
+                    sum1 += aip * bData[b1 + p];
+                    sum2 += aip * bData[b2 + p];
+                    sum3 += aip * bData[b3 + p];
+                }
+                cData[cRow + j] = biasData == null ? sum0 : sum0 + biasData[biasStart + j];
+                cData[cRow + j + 1] = biasData == null ? sum1 : sum1 + biasData[biasStart + j + 1];
+                cData[cRow + j + 2] = biasData == null ? sum2 : sum2 + biasData[biasStart + j + 2];
+                cData[cRow + j + 3] = biasData == null ? sum3 : sum3 + biasData[biasStart + j + 3];
+            }
+            for (; j < blockEnd; j++) {
+                int bRow = b.Index(j, 0);
+                double sum = 0;
+                for (int p = 0; p < inner; p++) {
+                    sum += aData[aRow + p] * bData[bRow + p];
+                }
+                cData[cRow + j] = biasData == null ? sum : sum + biasData[biasStart + j];
+            }
+        }
+    }
+
+    private static void MultTransBBlockFloat(Tensor a, Tensor b, Tensor bias, Tensor result, int from, int to,
+                                             int block, int blockEnd) {
+        float[] aData = a.getFloatData();
+        float[] bData = b.getFloatData();
+        float[] cData = result.getFloatData();
+        float[] biasData = bias != null ? bias.getFloatData() : null;
+        int biasStart = bias != null ? bias.Index(0, 0) : 0;
+        int inner = a.getCols();
+
+        for (int i = from; i < to; i++) {
+            int aRow = a.Index(i, 0);
+            int cRow = result.Index(i, 0);
+            int j = block;
+            for (; j + 4 <= blockEnd; j += 4) {
+                int b0 = b.Index(j, 0);
+                int b1 = b.Index(j + 1, 0);
+                int b2 = b.Index(j + 2, 0);
+                int b3 = b.Index(j + 3, 0);
+                float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                for (int p = 0; p < inner; p++) {
+                    float aip = aData[aRow + p];
+                    sum0 += aip * bData[b0 + p];
+                    sum1 += aip * bData[b1 + p];
+                    sum2 += aip * bData[b2 + p];
+                    sum3 += aip * bData[b3 + p];
+                }
+                cData[cRow + j] = biasData == null ? sum0 : sum0 + biasData[biasStart + j];
+                cData[cRow + j + 1] = biasData == null ? sum1 : sum1 + biasData[biasStart + j + 1];
+                cData[cRow + j + 2] = biasData == null ? sum2 : sum2 + biasData[biasStart + j + 2];
+                cData[cRow + j + 3] = biasData == null ? sum3 : sum3 + biasData[biasStart + j + 3];
+            }
+            for (; j < blockEnd; j++) {
+                int bRow = b.Index(j, 0);
+                float sum = 0;
+                for (int p = 0; p < inner; p++) {
+                    sum += aData[aRow + p] * bData[bRow + p];
+                }
+                cData[cRow + j] = biasData == null ? sum : sum + biasData[biasStart + j];
+            }
+        }
+    }
+
+    private static void MultTransBBlockQuantized(QuantizedTensor a, QuantizedTensor b, Tensor bias, Tensor result,
+                                                 int from, int to, int block, int blockEnd) {
+        byte[] aData = a.getData();
+        byte[] bData = b.getData();
+        float[] aScales = a.getScales();
+        float[] bScales = b.getScales();
+        float[] cData = result.getFloatData();
+        float[] biasData = bias != null ? bias.getFloatData() : null;
+        int biasStart = bias != null ? bias.Index(0, 0) : 0;
+        int inner = a.getCols();
+
+        for (int i = from; i < to; i++) {
+            int aRow = a.Index(i, 0);
+            int cRow = result.Index(i, 0);
+            for (int j = block; j < blockEnd; j++) {
+                int bRow = b.Index(j, 0);
+                int sum = 0;
+                for (int p = 0; p < inner; p++) {
+                    sum += aData[aRow + p] * bData[bRow + p];
+                }
+                float value = sum * aScales[i] * bScales[j];
+                cData[cRow + j] = biasData == null ? value : value + biasData[biasStart + j];
+            }
+        }
+    }
+
+    private static void CheckPrecision(Tensor a, Tensor b, Tensor result) {
+        if (a.getPrecision() != b.getPrecision() || a.getPrecision() != result.getPrecision()) {
+            throw new IllegalArgumentException("Cannot multiply " + a.getPrecision() + " and " + b.getPrecision()
+                    + " tensors into a " + result.getPrecision() + " tensor.");
+        }
+    }
+
+    // The slices of a tensor can be read past their last row, so a wrong inner dimension would not always fail.
+    private static void CheckInnerDimension(Tensor a, int aInner, Tensor b, int bInner) {
+        if (aInner != bInner) {
+            throw new IllegalArgumentException("Cannot multiply [" + a.getRows() + " x " + a.getCols() + "] and ["
+                    + b.getRows() + " x " + b.getCols() + "] tensors: inner dimensions " + aInner + " and "
+                    + bInner + " differ.");
+        }
+    }
+
+    private static void CheckShape(Tensor tensor, int rows, int cols) {
+        if (tensor.getRows() != rows || tensor.getCols() != cols) {
+            throw new IllegalArgumentException("Expected a [" + rows + " x " + cols + "] tensor, got ["
+                    + tensor.getRows() + " x " + tensor.getCols() + "].");
+        }
+    }
+}
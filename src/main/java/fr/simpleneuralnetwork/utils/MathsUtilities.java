@@ -4,13 +4,31 @@ package fr.simpleneuralnetwork.utils;
 public class MathsUtilities {
 
     public static int IndexMaxOfArray(double[] arr) {
+        return IndexMaxOfArray(arr, 0, arr.length);
+    }
+
+    public static int IndexMaxOfArray(double[] arr, int from, int length) {
         int maxIndex = 0;
 
-        for (int i = 1; i < arr.length; i++) {
-            if (arr[i] > arr[maxIndex]) {
+        for (int i = 1; i < length; i++) {
+            if (arr[from + i] > arr[from + maxIndex]) {
                 maxIndex = i;
             }
         }
         return maxIndex;
     }
+
+    public static int IndexMaxOfRow(Tensor tensor, int row) {
+        if (!tensor.IsFloat()) {
+            return IndexMaxOfArray(tensor.getData(), tensor.Index(row, 0), tensor.getCols());
+        }
+
+        int maxIndex = 0;
+        for (int j = 1; j < tensor.getCols(); j++) {
+            if (tensor.get(row, j) > tensor.get(row, maxIndex)) {
+                maxIndex = j;
+            }
+        }
+        return maxIndex;
+    }
 }
@@ -0,0 +1,28 @@
+package fr.simpleneuralnetwork.utils;
+
+/**
+ * Floating point type used to store and compute a tensor.
+ */
+public enum Precision {
+    DOUBLE(Double.BYTES),
+    FLOAT(Float.BYTES);
+
+    private final int bytes;
+
+    Precision(int bytes) {
+        this.bytes = bytes;
+    }
+
+    public int getBytes() {
+        return bytes;
+    }
+
+    public static Precision FromBytes(int bytes) {
+        for (Precision precision : values()) {
+            if (precision.bytes == bytes) {
+                return precision;
+            }
+        }
+        throw new IllegalArgumentException("No precision stored on " + bytes + " bytes.");
+    }
+}
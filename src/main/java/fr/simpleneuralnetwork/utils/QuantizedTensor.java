@@ -0,0 +1,134 @@
+package fr.simpleneuralnetwork.utils;
+
+/**
+ * Contiguous row-major matrix of 8-bit integers with one scale per row: element (i, j) stands for
+ * {@code data[i * cols + j] * scales[i]}.
+ * <p>
+ * Rows are quantized symmetrically: the scale of a row is its largest absolute value divided by 127,
+ * so zero stays exactly zero and every value is off by at most half a scale.
+ */
+public final class QuantizedTensor {
+
+    public static final int MAX_VALUE = 127;
+
+    private final byte[] data;
+    private final float[] scales;
+    private int rows;
+    private final int cols;
+
+    public QuantizedTensor(int rows, int cols) {
+        this(new byte[rows * cols], new float[rows], rows, cols);
+    }
+
+    public QuantizedTensor(byte[] data, float[] scales, int rows, int cols) {
+        if (data.length < rows * cols || scales.length < rows) {
+            throw new IllegalArgumentException("A [" + rows + " x " + cols + "] quantized tensor needs "
+                    + rows * cols + " values and " + rows + " scales.");
+        }
+        this.data = data;
+        this.scales = scales;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    public static QuantizedTensor Quantize(Tensor tensor) {
+        QuantizedTensor quantized = new QuantizedTensor(tensor.getRows(), tensor.getCols());
+        quantized.QuantizeFrom(tensor);
+        return quantized;
+    }
+
+    /**
+     * Overwrites this tensor with the quantized rows of a tensor of the same shape, in any precision.
+     */
+    public void QuantizeFrom(Tensor tensor) {
+        if (tensor.getRows() != rows || tensor.getCols() != cols) {
+            throw new IllegalArgumentException("Cannot quantize a [" + tensor.getRows() + " x " + tensor.getCols()
+                    + "] tensor into a [" + rows + " x " + cols + "] one.");
+        }
+
+        for (int i = 0; i < rows; i++) {
+            if (tensor.IsFloat()) {
+                QuantizeRow(tensor.getFloatData(), tensor.Index(i, 0), i);
+            } else {
+                QuantizeRow(tensor.getData(), tensor.Index(i, 0), i);
+            }
+        }
+    }
+
+    private void QuantizeRow(double[] values, int from, int row) {
+        double maxAbs = 0;
+        for (int j = 0; j < cols; j++) {
+            maxAbs = Math.max(maxAbs, Math.abs(values[from + j]));
+        }
+
+        scales[row] = (float) (maxAbs / MAX_VALUE);
+        double inverseScale = maxAbs == 0 ? 0 : MAX_VALUE / maxAbs;
+        int start = row * cols;
+        for (int j = 0; j < cols; j++) {
+            data[start + j] = (byte) Math.rint(values[from + j] * inverseScale);
+        }
+    }
+
+    private void QuantizeRow(float[] values, int from, int row) {
+        float maxAbs = 0;
+        for (int j = 0; j < cols; j++) {
+            maxAbs = Math.max(maxAbs, Math.abs(values[from + j]));
+        }
+
+        scales[row] = maxAbs / MAX_VALUE;
+        float inverseScale = maxAbs == 0 ? 0 : MAX_VALUE / maxAbs;
+        int start = row * cols;
+        for (int j = 0; j < cols; j++) {
+            data[start + j] = (byte) Math.rint(values[from + j] * inverseScale);
+        }
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public float[] getScales() {
+        return scales;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Shrinks or grows the number of rows viewed, within the capacity of the backing arrays.
+     */
+    public void Resize(int rows) {
+        if (rows < 0 || rows * cols > data.length || rows > scales.length) {
+            throw new IllegalArgumentException("Cannot resize a quantized tensor of " + scales.length + " rows to "
+                    + rows + " rows.");
+        }
+        this.rows = rows;
+    }
+
+    public int Index(int row, int col) {
+        return row * cols + col;
+    }
+
+    public double get(int row, int col) {
+        return data[Index(row, col)] * (double) scales[row];
+    }
+
+    /**
+     * Returns the dequantized values in the given precision.
+     */
+    public Tensor Dequantize(Precision precision) {
+        Tensor tensor = new Tensor(rows, cols, precision);
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                tensor.set(i, j, get(i, j));
+            }
+        }
+        return tensor;
+    }
+}
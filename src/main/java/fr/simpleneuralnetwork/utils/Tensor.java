@@ -0,0 +1,257 @@
+package fr.simpleneuralnetwork.utils;
+
+import java.util.Arrays;
+
+/**
+ * Two dimensional view over a contiguous row-major {@code double[]} or {@code float[]},
+ * depending on its {@link Precision}.
+ * Element (i, j) is stored at {@code offset + i * stride + j}, so row slices
+ * share the backing array instead of copying it.
+ */
+public class Tensor {
+
+    private final double[] data;
+    private final float[] floatData;
+    private final Precision precision;
+    private final int offset;
+    private int rows;
+    private final int cols;
+    private final int stride;
+
+    public Tensor(int rows, int cols) {
+        this(rows, cols, Precision.DOUBLE);
+    }
+
+    public Tensor(int rows, int cols, Precision precision) {
+        this(precision == Precision.DOUBLE ? new double[rows * cols] : null,
+                precision == Precision.FLOAT ? new float[rows * cols] : null, 0, rows, cols, cols);
+    }
+
+    public Tensor(double[] data, int offset, int rows, int cols, int stride) {
+        this(data, null, offset, rows, cols, stride);
+    }
+
+    public Tensor(float[] data, int offset, int rows, int cols, int stride) {
+        this(null, data, offset, rows, cols, stride);
+    }
+
+    private Tensor(double[] data, float[] floatData, int offset, int rows, int cols, int stride) {
+        this.data = data;
+        this.floatData = floatData;
+        this.precision = data != null ? Precision.DOUBLE : Precision.FLOAT;
+        this.offset = offset;
+        this.rows = rows;
+        this.cols = cols;
+        this.stride = stride;
+        CheckCapacity(rows);
+    }
+
+    public static Tensor Wrap(double[] data, int rows, int cols) {
+        return new Tensor(data, 0, rows, cols, cols);
+    }
+
+    public static Tensor FromArray(double[][] array) {
+        return FromArray(array, Precision.DOUBLE);
+    }
+
+    public static Tensor FromArray(double[][] array, Precision precision) {
+        Tensor tensor = new Tensor(array.length, array[0].length, precision);
+
+        for (int i = 0; i < array.length; i++) {
+            tensor.SetRow(i, array[i]);
+        }
+        return tensor;
+    }
+
+    public double[] getData() {
+        return data;
+    }
+
+    public float[] getFloatData() {
+        return floatData;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    public boolean IsFloat() {
+        return precision == Precision.FLOAT;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Changes the number of rows seen through this tensor without reallocating,
+     * so a buffer sized for the largest batch can also hold a smaller one.
+     */
+    public void Resize(int rows) {
+        CheckCapacity(rows);
+        this.rows = rows;
+    }
+
+    private void CheckCapacity(int rows) {
+        int length = data != null ? data.length : floatData.length;
+        if (cols > stride || offset + (rows - 1) * stride + cols > length) {
+            throw new IllegalArgumentException("Tensor shape [" + rows + " x " + cols + "] with stride "
+                    + stride + " does not fit in " + length + " elements.");
+        }
+    }
+
+    public int Index(int row, int col) {
+        return offset + row * stride + col;
+    }
+
+    public double get(int row, int col) {
+        int index = offset + row * stride + col;
+        return data != null ? data[index] : floatData[index];
+    }
+
+    public void set(int row, int col, double value) {
+        int index = offset + row * stride + col;
+        if (data != null) {
+            data[index] = value;
+        } else {
+            floatData[index] = (float) value;
+        }
+    }
+
+    public boolean IsContiguous() {
+        return stride == cols;
+    }
+
+    public Tensor RowSlice(int start, int end) {
+        return new Tensor(data, floatData, offset + start * stride, end - start, cols, stride);
+    }
+
+    public double[] GetRow(int row) {
+        int start = offset + row * stride;
+        if (data != null) {
+            return Arrays.copyOfRange(data, start, start + cols);
+        }
+
+        double[] values = new double[cols];
+        for (int j = 0; j < cols; j++) {
+            values[j] = floatData[start + j];
+        }
+        return values;
+    }
+
+    public void SetRow(int row, double[] values) {
+        int start = offset + row * stride;
+        if (data != null) {
+            System.arraycopy(values, 0, data, start, cols);
+            return;
+        }
+        for (int j = 0; j < cols; j++) {
+            floatData[start + j] = (float) values[j];
+        }
+    }
+
+    /**
+     * Copies {@code getRows()} rows of the source, starting at sourceRow, into this tensor.
+     * Values are converted when the two tensors have different precisions.
+     */
+    public void CopyRowsFrom(Tensor source, int sourceRow) {
+        if (precision == source.precision && IsContiguous() && source.IsContiguous() && cols == source.cols) {
+            CopyRange(source, source.Index(sourceRow, 0), offset, rows * cols);
+            return;
+        }
+        for (int i = 0; i < rows; i++) {
+            CopyRange(source, source.Index(sourceRow + i, 0), Index(i, 0), cols);
+        }
+    }
+
+    /**
+     * Copies a single row of the source into the given row of this tensor.
+     */
+    public void CopyRow(Tensor source, int sourceRow, int row) {
+        CopyRange(source, source.Index(sourceRow, 0), Index(row, 0), cols);
+    }
+
+    private void CopyRange(Tensor source, int sourceStart, int start, int length) {
+        if (data != null && source.data != null) {
+            System.arraycopy(source.data, sourceStart, data, start, length);
+        } else if (floatData != null && source.floatData != null) {
+            System.arraycopy(source.floatData, sourceStart, floatData, start, length);
+        } else if (data != null) {
+            for (int i = 0; i < length; i++) {
+                data[start + i] = source.floatData[sourceStart + i];
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                floatData[start + i] = (float) source.data[sourceStart + i];
+            }
+        }
+    }
+
+    /**
+     * Sets the row to the one-hot encoding of a class: 1 in column index, 0 elsewhere.
+     * An index outside of the columns gives a row of 0.
+     */
+    public void SetOneHotRow(int row, int index) {
+        int start = offset + row * stride;
+        FillRange(start, start + cols, 0);
+        if (index >= 0 && index < cols) {
+            set(row, index, 1.0);
+        }
+    }
+
+    public void Fill(double value) {
+        if (IsContiguous()) {
+            FillRange(offset, offset + rows * cols, value);
+            return;
+        }
+        for (int i = 0; i < rows; i++) {
+            int start = offset + i * stride;
+            FillRange(start, start + cols, value);
+        }
+    }
+
+    private void FillRange(int from, int to, double value) {
+        if (data != null) {
+            Arrays.fill(data, from, to, value);
+        } else {
+            Arrays.fill(floatData, from, to, (float) value);
+        }
+    }
+
+    /**
+     * Returns a contiguous deep copy of this tensor, with the same precision.
+     */
+    public Tensor Copy() {
+        return Copy(precision);
+    }
+
+    /**
+     * Returns a contiguous deep copy of this tensor converted to the given precision.
+     */
+    public Tensor Copy(Precision precision) {
+        Tensor copy = new Tensor(rows, cols, precision);
+        copy.CopyRowsFrom(this, 0);
+        return copy;
+    }
+
+    public double[][] ToArray() {
+        double[][] array = new double[rows][];
+
+        for (int i = 0; i < rows; i++) {
+            array[i] = GetRow(i);
+        }
+        return array;
+    }
+}
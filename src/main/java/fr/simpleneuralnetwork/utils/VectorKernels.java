@@ -0,0 +1,1006 @@
+package fr.simpleneuralnetwork.utils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD versions of the element-wise kernels of a training step: activations and their derivatives,
+ * output gradients, loss reductions and the parameter updates of every optimizer.
+ * <p>
+ * When all the operands are contiguous with the same number of columns, a kernel runs over the whole tensor
+ * at once, otherwise row by row over the columns of its first operand.
+ * The elements after the last full vector go through the scalar formula. The operands must share a precision.
+ * Only call these kernels after checking {@link Vectorization}, since this class needs the incubator module.
+ */
+public final class VectorKernels {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // At least 8 int lanes, so that the matching bytes fill the smallest vector shape, of 64 bits.
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED.length() >= 8
+            ? IntVector.SPECIES_PREFERRED : IntVector.SPECIES_256;
+    // As many bytes as there are lanes of INTS, widened to ints in a single conversion.
+    private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class,
+            VectorShape.forBitSize(INTS.length() * Byte.SIZE));
+
+    private VectorKernels() {
+    }
+
+    /**
+     * result = 1 / (1 + exp(-input))
+     */
+    public static void Sigmoid(Tensor input, Tensor result) {
+        int length = SegmentLength(input, result);
+        for (int s = 0; s < Segments(input, result); s++) {
+            if (input.IsFloat()) {
+                Sigmoid(input.getFloatData(), input.Index(s, 0), result.getFloatData(), result.Index(s, 0), length);
+            } else {
+                Sigmoid(input.getData(), input.Index(s, 0), result.getData(), result.Index(s, 0), length);
+            }
+        }
+    }
+
+    /**
+     * result = input / (1 + exp(-input))
+     */
+    public static void SiLU(Tensor input, Tensor result) {
+        int length = SegmentLength(input, result);
+        for (int s = 0; s < Segments(input, result); s++) {
+            if (input.IsFloat()) {
+                SiLU(input.getFloatData(), input.Index(s, 0), result.getFloatData(), result.Index(s, 0), length);
+            } else {
+                SiLU(input.getData(), input.Index(s, 0), result.getData(), result.Index(s, 0), length);
+            }
+        }
+    }
+
+    /**
+     * result = input > 0 ? input : 0
+     */
+    public static void ReLU(Tensor input, Tensor result) {
+        int length = SegmentLength(input, result);
+        for (int s = 0; s < Segments(input, result); s++) {
+            if (input.IsFloat()) {
+                ReLU(input.getFloatData(), input.Index(s, 0), result.getFloatData(), result.Index(s, 0), length);
+            } else {
+                ReLU(input.getData(), input.Index(s, 0), result.getData(), result.Index(s, 0), length);
+            }
+        }
+    }
+
+    /**
+     * Softmax of each row of the input.
+     */
+    public static void SoftMax(Tensor input, Tensor result) {
+        for (int i = 0; i < input.getRows(); i++) {
+            if (input.IsFloat()) {
+                SoftMax(input.getFloatData(), input.Index(i, 0), result.getFloatData(), result.Index(i, 0), input.getCols());
+            } else {
+                SoftMax(input.getData(), input.Index(i, 0), result.getData(), result.Index(i, 0), input.getCols());
+            }
+        }
+    }
+
+    /**
+     * result = sigmoid(input) * (1 - sigmoid(input))
+     */
+    public static void SigmoidDerivative(Tensor input, Tensor result) {
+        int length = SegmentLength(input, result);
+        for (int s = 0; s < Segments(input, result); s++) {
+            if (input.IsFloat()) {
+                SigmoidDerivative(input.getFloatData(), input.Index(s, 0), result.getFloatData(), result.Index(s, 0), length);
+            } else {
+                SigmoidDerivative(input.getData(), input.Index(s, 0), result.getData(), result.Index(s, 0), length);
+            }
+        }
+    }
+
+    /**
+     * result = (1 + e + input * e) / (1 + e)^2, with e = exp(-input)
+     */
+    public static void SiLUDerivative(Tensor input, Tensor result) {
+        int length = SegmentLength(input, result);
+        for (int s = 0; s < Segments(input, result); s++) {
+            if (input.IsFloat()) {
+                SiLUDerivative(input.getFloatData(), input.Index(s, 0), result.getFloatData(), result.Index(s, 0), length);
+            } else {
+                SiLUDerivative(input.getData(), input.Index(s, 0), result.getData(), result.Index(s, 0), length);
+            }
+        }
+    }
+
+    /**
+     * result = input > 0 ? 1 : 0
+     */
+    public static void ReLUDerivative(Tensor input, Tensor result) {
+        int length = SegmentLength(input, result);
+        for (int s = 0; s < Segments(input, result); s++) {
+            if (input.IsFloat()) {
+                ReLUDerivative(input.getFloatData(), input.Index(s, 0), result.getFloatData(), result.Index(s, 0), length);
+            } else {
+                ReLUDerivative(input.getData(), input.Index(s, 0), result.getData(), result.Index(s, 0), length);
+            }
+        }
+    }
+
+    /**
+     * gradients *= outputs * (1 - outputs), the sigmoid derivative taken from its outputs.
+     */
+    public static void SigmoidChain(Tensor outputs, Tensor gradients) {
+        int length = SegmentLength(outputs, gradients);
+        for (int s = 0; s < Segments(outputs, gradients); s++) {
+            if (outputs.IsFloat()) {
+                SigmoidChain(outputs.getFloatData(), outputs.Index(s, 0), gradients.getFloatData(), gradients.Index(s, 0), length);
+            } else {
+                SigmoidChain(outputs.getData(), outputs.Index(s, 0), gradients.getData(), gradients.Index(s, 0), length);
+            }
+        }
+    }
+
+    /**
+     * gradients *= outputs > 0 ? 1 : 0
+     */
+    public static void ReLUChain(Tensor outputs, Tensor gradients) {
+        int length = SegmentLength(outputs, gradients);
+        for (int s = 0; s < Segments(outputs, gradients); s++) {
+            if (outputs.IsFloat()) {
+                ReLUChain(outputs.getFloatData(), outputs.Index(s, 0), gradients.getFloatData(), gradients.Index(s, 0), length);
+            } else {
+                ReLUChain(outputs.getData(), outputs.Index(s, 0), gradients.getData(), gradients.Index(s, 0), length);
+            }
+        }
+    }
+
+    /**
+     * gradients *= s * (1 + z * (1 - s)), with s = outputs / z, or 0.5 where z = 0.
+     */
+    public static void SiLUChain(Tensor linearInputs, Tensor outputs, Tensor gradients) {
+        int length = SegmentLength(linearInputs, outputs, gradients);
+        for (int s = 0; s < Segments(linearInputs, outputs, gradients); s++) {
+            if (outputs.IsFloat()) {
+                SiLUChain(linearInputs.getFloatData(), linearInputs.Index(s, 0), outputs.getFloatData(), outputs.Index(s, 0),
+                        gradients.getFloatData(), gradients.Index(s, 0), length);
+            } else {
+                SiLUChain(linearInputs.getData(), linearInputs.Index(s, 0), outputs.getData(), outputs.Index(s, 0),
+                        gradients.getData(), gradients.Index(s, 0), length);
+            }
+        }
+    }
+
+    /**
+     * result = factor * (a - b)
+     */
+    public static void ScaledDifference(Tensor a, Tensor b, Tensor result, double factor) {
+        int length = SegmentLength(a, b, result);
+        for (int s = 0; s < Segments(a, b, result); s++) {
+            if (a.IsFloat()) {
+                ScaledDifference(a.getFloatData(), a.Index(s, 0), b.getFloatData(), b.Index(s, 0),
+                        result.getFloatData(), result.Index(s, 0), length, (float) factor);
+            } else {
+                ScaledDifference(a.getData(), a.Index(s, 0), b.getData(), b.Index(s, 0),
+                        result.getData(), result.Index(s, 0), length, factor);
+            }
+        }
+    }
+
+    /**
+     * Sum of -expected * log(outputs + epsilon).
+     */
+    public static double CrossEntropy(Tensor outputs, Tensor expectedOutputs, double epsilon) {
+        int length = SegmentLength(outputs, expectedOutputs);
+        double sum = 0;
+        for (int s = 0; s < Segments(outputs, expectedOutputs); s++) {
+            if (outputs.IsFloat()) {
+                sum += CrossEntropy(outputs.getFloatData(), outputs.Index(s, 0),
+                        expectedOutputs.getFloatData(), expectedOutputs.Index(s, 0), length, (float) epsilon);
+            } else {
+                sum += CrossEntropy(outputs.getData(), outputs.Index(s, 0),
+                        expectedOutputs.getData(), expectedOutputs.Index(s, 0), length, epsilon);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Sum of (outputs - expected)^2.
+     */
+    public static double SquaredError(Tensor outputs, Tensor expectedOutputs) {
+        int length = SegmentLength(outputs, expectedOutputs);
+        double sum = 0;
+        for (int s = 0; s < Segments(outputs, expectedOutputs); s++) {
+            if (outputs.IsFloat()) {
+                sum += SquaredError(outputs.getFloatData(), outputs.Index(s, 0),
+                        expectedOutputs.getFloatData(), expectedOutputs.Index(s, 0), length);
+            } else {
+                sum += SquaredError(outputs.getData(), outputs.Index(s, 0),
+                        expectedOutputs.getData(), expectedOutputs.Index(s, 0), length);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * parameters -= learningRate * gradients / datasetSize, then clears the gradients, in a single pass.
+     */
+    public static void GradientStep(Tensor parameters, Tensor gradients, double learningRate, int datasetSize) {
+        int length = SegmentLength(parameters, gradients);
+        for (int s = 0; s < Segments(parameters, gradients); s++) {
+            if (parameters.IsFloat()) {
+                GradientStep(parameters.getFloatData(), parameters.Index(s, 0), gradients.getFloatData(), gradients.Index(s, 0),
+                        length, (float) (learningRate / datasetSize));
+            } else {
+                GradientStep(parameters.getData(), parameters.Index(s, 0), gradients.getData(), gradients.Index(s, 0),
+                        length, learningRate, datasetSize);
+            }
+        }
+    }
+
+    /**
+     * velocity = momentum * velocity + gradients / datasetSize, parameters -= learningRate * velocity,
+     * then clears the gradients, in a single pass.
+     */
+    public static void MomentumStep(Tensor parameters, Tensor gradients, Tensor velocity, double learningRate,
+                                    int datasetSize, double momentum) {
+        int length = SegmentLength(parameters, gradients, velocity);
+        for (int s = 0; s < Segments(parameters, gradients, velocity); s++) {
+            if (parameters.IsFloat()) {
+                MomentumStep(parameters.getFloatData(), parameters.Index(s, 0), gradients.getFloatData(),
+                        gradients.Index(s, 0), velocity.getFloatData(), velocity.Index(s, 0), length,
+                        (float) learningRate, (float) (1.0 / datasetSize), (float) momentum);
+            } else {
+                MomentumStep(parameters.getData(), parameters.Index(s, 0), gradients.getData(), gradients.Index(s, 0),
+                        velocity.getData(), velocity.Index(s, 0), length, learningRate, 1.0 / datasetSize, momentum);
+            }
+        }
+    }
+
+    /**
+     * With g = gradients / datasetSize: meanSquares = decay * meanSquares + (1 - decay) * g^2,
+     * parameters -= learningRate * g / (sqrt(meanSquares) + epsilon), then clears the gradients, in a single pass.
+     */
+    public static void RMSPropStep(Tensor parameters, Tensor gradients, Tensor meanSquares, double learningRate,
+                                   int datasetSize, double decay, double epsilon) {
+        int length = SegmentLength(parameters, gradients, meanSquares);
+        for (int s = 0; s < Segments(parameters, gradients, meanSquares); s++) {
+            if (parameters.IsFloat()) {
+                RMSPropStep(parameters.getFloatData(), parameters.Index(s, 0), gradients.getFloatData(),
+                        gradients.Index(s, 0), meanSquares.getFloatData(), meanSquares.Index(s, 0), length,
+                        (float) learningRate, (float) (1.0 / datasetSize), (float) decay, (float) epsilon);
+            } else {
+                RMSPropStep(parameters.getData(), parameters.Index(s, 0), gradients.getData(), gradients.Index(s, 0),
+                        meanSquares.getData(), meanSquares.Index(s, 0), length,
+                        learningRate, 1.0 / datasetSize, decay, epsilon);
+            }
+        }
+    }
+
+    /**
+     * With g = gradients / datasetSize: moments = beta1 * moments + (1 - beta1) * g,
+     * squares = beta2 * squares + (1 - beta2) * g^2, parameters -= stepSize * moments / (sqrt(squares) + epsilon),
+     * then clears the gradients, in a single pass. The bias corrections are folded into stepSize and epsilon.
+     * The two state tensors must have the same layout.
+     */
+    public static void AdamStep(Tensor parameters, Tensor gradients, Tensor moments, Tensor squares, double stepSize,
+                                int datasetSize, double beta1, double beta2, double epsilon) {
+        int length = SegmentLength(parameters, gradients, moments);
+        for (int s = 0; s < Segments(parameters, gradients, moments); s++) {
+            if (parameters.IsFloat()) {
+                AdamStep(parameters.getFloatData(), parameters.Index(s, 0), gradients.getFloatData(),
+                        gradients.Index(s, 0), moments.getFloatData(), squares.getFloatData(), moments.Index(s, 0),
+                        length, (float) stepSize, (float) (1.0 / datasetSize), (float) beta1, (float) beta2,
+                        (float) epsilon);
+            } else {
+                AdamStep(parameters.getData(), parameters.Index(s, 0), gradients.getData(), gradients.Index(s, 0),
+                        moments.getData(), squares.getData(), moments.Index(s, 0), length,
+                        stepSize, 1.0 / datasetSize, beta1, beta2, epsilon);
+            }
+        }
+    }
+
+    /**
+     * result[i, j] = a[i] . b[j] + bias[j] for the rows [from, to[ of a and [block, blockEnd[ of b, bias being optional.
+     * This is the inner block of {@link Gemm#MultTransB}, with the dot products accumulated in vector lanes.
+     */
+    public static void MultTransB(Tensor a, Tensor b, Tensor bias, Tensor result, int from, int to, int block, int blockEnd) {
+        for (int i = from; i < to; i++) {
+            for (int j = block; j < blockEnd; j += 4) {
+                int count = Math.min(4, blockEnd - j);
+                if (a.IsFloat()) {
+                    DotProducts(a.getFloatData(), a.Index(i, 0), b.getFloatData(), b.Index(j, 0), b.getStride(), a.getCols(),
+                            count, result.getFloatData(), result.Index(i, j),
+                            bias != null ? bias.getFloatData() : null, bias != null ? bias.Index(0, j) : 0);
+                } else {
+                    DotProducts(a.getData(), a.Index(i, 0), b.getData(), b.Index(j, 0), b.getStride(), a.getCols(),
+                            count, result.getData(), result.Index(i, j),
+                            bias != null ? bias.getData() : null, bias != null ? bias.Index(0, j) : 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * result[i, j] = a[i] . b[j] * scale(a[i]) * scale(b[j]) + bias[j] for the rows [from, to[ of a and
+     * [block, blockEnd[ of b, bias being optional. This is the inner block of the quantized {@link Gemm#MultTransB}:
+     * the bytes are widened to ints and the dot products accumulated exactly in int lanes.
+     */
+    public static void MultTransB(QuantizedTensor a, QuantizedTensor b, Tensor bias, Tensor result,
+                                  int from, int to, int block, int blockEnd) {
+        float[] biasData = bias != null ? bias.getFloatData() : null;
+        int biasFrom = bias != null ? bias.Index(0, 0) : 0;
+
+        for (int i = from; i < to; i++) {
+            for (int j = block; j < blockEnd; j += 4) {
+                int count = Math.min(4, blockEnd - j);
+                DotProducts(a.getData(), a.Index(i, 0), b.getData(), b.Index(j, 0), b.getCols(), a.getCols(), count,
+                        a.getScales()[i], b.getScales(), j, result.getFloatData(), result.Index(i, j),
+                        biasData, biasFrom + j);
+            }
+        }
+    }
+
+    private static int Segments(Tensor a, Tensor b) {
+        return Flat(a, b) ? 1 : a.getRows();
+    }
+
+    private static int Segments(Tensor a, Tensor b, Tensor c) {
+        return Flat(a, b) && Flat(a, c) ? 1 : a.getRows();
+    }
+
+    private static int SegmentLength(Tensor a, Tensor b) {
+        return Flat(a, b) ? a.getRows() * a.getCols() : a.getCols();
+    }
+
+    private static int SegmentLength(Tensor a, Tensor b, Tensor c) {
+        return Flat(a, b) && Flat(a, c) ? a.getRows() * a.getCols() : a.getCols();
+    }
+
+    // Two tensors can be walked as a single range when both are contiguous with rows of the same length.
+    private static boolean Flat(Tensor a, Tensor b) {
+        return a.IsContiguous() && b.IsContiguous() && a.getCols() == b.getCols();
+    }
+
+    private static void Sigmoid(double[] z, int zFrom, double[] y, int yFrom, int length) {
+        DoubleVector one = DoubleVector.broadcast(DOUBLES, 1.0);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, z, zFrom + i);
+            one.div(v.neg().lanewise(VectorOperators.EXP).add(one)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] = 1.0 / (1.0 + Math.exp(-z[zFrom + i]));
+        }
+    }
+
+    private static void Sigmoid(float[] z, int zFrom, float[] y, int yFrom, int length) {
+        FloatVector one = FloatVector.broadcast(FLOATS, 1f);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector v = FloatVector.fromArray(FLOATS, z, zFrom + i);
+            one.div(v.neg().lanewise(VectorOperators.EXP).add(one)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] = (float) (1.0 / (1.0 + Math.exp(-z[zFrom + i])));
+        }
+    }
+
+    private static void SiLU(double[] z, int zFrom, double[] y, int yFrom, int length) {
+        DoubleVector one = DoubleVector.broadcast(DOUBLES, 1.0);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, z, zFrom + i);
+            v.div(v.neg().lanewise(VectorOperators.EXP).add(one)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] = z[zFrom + i] / (1.0 + Math.exp(-z[zFrom + i]));
+        }
+    }
+
+    private static void SiLU(float[] z, int zFrom, float[] y, int yFrom, int length) {
+        FloatVector one = FloatVector.broadcast(FLOATS, 1f);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector v = FloatVector.fromArray(FLOATS, z, zFrom + i);
+            v.div(v.neg().lanewise(VectorOperators.EXP).add(one)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] = (float) (z[zFrom + i] / (1.0 + Math.exp(-z[zFrom + i])));
+        }
+    }
+
+    private static void ReLU(double[] z, int zFrom, double[] y, int yFrom, int length) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, z, zFrom + i);
+            v.blend(0.0, v.compare(VectorOperators.GT, 0.0).not()).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] = z[zFrom + i] > 0 ? z[zFrom + i] : 0;
+        }
+    }
+
+    private static void ReLU(float[] z, int zFrom, float[] y, int yFrom, int length) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector v = FloatVector.fromArray(FLOATS, z, zFrom + i);
+            v.blend(0f, v.compare(VectorOperators.GT, 0f).not()).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] = z[zFrom + i] > 0 ? z[zFrom + i] : 0;
+        }
+    }
+
+    private static void SoftMax(double[] z, int zFrom, double[] y, int yFrom, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        if (bound > 0) {
+            DoubleVector maxima = DoubleVector.fromArray(DOUBLES, z, zFrom);
+            for (i = DOUBLES.length(); i < bound; i += DOUBLES.length()) {
+                maxima = maxima.max(DoubleVector.fromArray(DOUBLES, z, zFrom + i));
+            }
+            max = maxima.reduceLanes(VectorOperators.MAX);
+        }
+        for (; i < length; i++) {
+            max = Math.max(max, z[zFrom + i]);
+        }
+
+        DoubleVector sums = DoubleVector.zero(DOUBLES);
+        for (i = 0; i < bound; i += DOUBLES.length()) {
+            DoubleVector exp = DoubleVector.fromArray(DOUBLES, z, zFrom + i).sub(max).lanewise(VectorOperators.EXP);
+            exp.intoArray(y, yFrom + i);
+            sums = sums.add(exp);
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            y[yFrom + i] = Math.exp(z[zFrom + i] - max);
+            sum += y[yFrom + i];
+        }
+
+        for (i = 0; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, y, yFrom + i).div(sum).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] /= sum;
+        }
+    }
+
+    private static void SoftMax(float[] z, int zFrom, float[] y, int yFrom, int length) {
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        float max = Float.NEGATIVE_INFINITY;
+        if (bound > 0) {
+            FloatVector maxima = FloatVector.fromArray(FLOATS, z, zFrom);
+            for (i = FLOATS.length(); i < bound; i += FLOATS.length()) {
+                maxima = maxima.max(FloatVector.fromArray(FLOATS, z, zFrom + i));
+            }
+            max = maxima.reduceLanes(VectorOperators.MAX);
+        }
+        for (; i < length; i++) {
+            max = Math.max(max, z[zFrom + i]);
+        }
+
+        double sum = 0;
+        for (i = 0; i < bound; i += FLOATS.length()) {
+            FloatVector exp = FloatVector.fromArray(FLOATS, z, zFrom + i).sub(max).lanewise(VectorOperators.EXP);
+            exp.intoArray(y, yFrom + i);
+            sum += exp.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] = (float) Math.exp(z[zFrom + i] - max);
+            sum += y[yFrom + i];
+        }
+
+        float total = (float) sum;
+        for (i = 0; i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, y, yFrom + i).div(total).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] /= total;
+        }
+    }
+
+    private static void SigmoidDerivative(double[] z, int zFrom, double[] y, int yFrom, int length) {
+        DoubleVector one = DoubleVector.broadcast(DOUBLES, 1.0);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, z, zFrom + i);
+            DoubleVector sigmoid = one.div(v.neg().lanewise(VectorOperators.EXP).add(one));
+            sigmoid.mul(one.sub(sigmoid)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            double sigmoid = 1.0 / (1.0 + Math.exp(-z[zFrom + i]));
+            y[yFrom + i] = sigmoid * (1 - sigmoid);
+        }
+    }
+
+    private static void SigmoidDerivative(float[] z, int zFrom, float[] y, int yFrom, int length) {
+        FloatVector one = FloatVector.broadcast(FLOATS, 1f);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector v = FloatVector.fromArray(FLOATS, z, zFrom + i);
+            FloatVector sigmoid = one.div(v.neg().lanewise(VectorOperators.EXP).add(one));
+            sigmoid.mul(one.sub(sigmoid)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            double sigmoid = 1.0 / (1.0 + Math.exp(-z[zFrom + i]));
+            y[yFrom + i] = (float) (sigmoid * (1 - sigmoid));
+        }
+    }
+
+    private static void SiLUDerivative(double[] z, int zFrom, double[] y, int yFrom, int length) {
+        DoubleVector one = DoubleVector.broadcast(DOUBLES, 1.0);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, z, zFrom + i);
+            DoubleVector exp = v.neg().lanewise(VectorOperators.EXP);
+            DoubleVector denominator = one.add(exp);
+            one.add(exp).add(v.mul(exp)).div(denominator.mul(denominator)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            double exp = Math.exp(-z[zFrom + i]);
+            y[yFrom + i] = (1.0 + exp + z[zFrom + i] * exp) / ((1 + exp) * (1 + exp));
+        }
+    }
+
+    private static void SiLUDerivative(float[] z, int zFrom, float[] y, int yFrom, int length) {
+        FloatVector one = FloatVector.broadcast(FLOATS, 1f);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector v = FloatVector.fromArray(FLOATS, z, zFrom + i);
+            FloatVector exp = v.neg().lanewise(VectorOperators.EXP);
+            FloatVector denominator = one.add(exp);
+            one.add(exp).add(v.mul(exp)).div(denominator.mul(denominator)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            double exp = Math.exp(-z[zFrom + i]);
+            y[yFrom + i] = (float) ((1.0 + exp + z[zFrom + i] * exp) / ((1 + exp) * (1 + exp)));
+        }
+    }
+
+    private static void ReLUDerivative(double[] z, int zFrom, double[] y, int yFrom, int length) {
+        DoubleVector zero = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, z, zFrom + i);
+            zero.blend(1.0, v.compare(VectorOperators.GT, 0.0)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] = z[zFrom + i] > 0 ? 1 : 0;
+        }
+    }
+
+    private static void ReLUDerivative(float[] z, int zFrom, float[] y, int yFrom, int length) {
+        FloatVector zero = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector v = FloatVector.fromArray(FLOATS, z, zFrom + i);
+            zero.blend(1f, v.compare(VectorOperators.GT, 0f)).intoArray(y, yFrom + i);
+        }
+        for (; i < length; i++) {
+            y[yFrom + i] = z[zFrom + i] > 0 ? 1 : 0;
+        }
+    }
+
+    private static void SigmoidChain(double[] y, int yFrom, double[] g, int gFrom, int length) {
+        DoubleVector one = DoubleVector.broadcast(DOUBLES, 1.0);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector outputs = DoubleVector.fromArray(DOUBLES, y, yFrom + i);
+            DoubleVector.fromArray(DOUBLES, g, gFrom + i).mul(outputs.mul(one.sub(outputs))).intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            g[gFrom + i] *= y[yFrom + i] * (1 - y[yFrom + i]);
+        }
+    }
+
+    private static void SigmoidChain(float[] y, int yFrom, float[] g, int gFrom, int length) {
+        FloatVector one = FloatVector.broadcast(FLOATS, 1f);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector outputs = FloatVector.fromArray(FLOATS, y, yFrom + i);
+            FloatVector.fromArray(FLOATS, g, gFrom + i).mul(outputs.mul(one.sub(outputs))).intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            g[gFrom + i] *= y[yFrom + i] * (1 - y[yFrom + i]);
+        }
+    }
+
+    private static void ReLUChain(double[] y, int yFrom, double[] g, int gFrom, int length) {
+        DoubleVector zero = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector derivatives = zero.blend(1.0, DoubleVector.fromArray(DOUBLES, y, yFrom + i).compare(VectorOperators.GT, 0.0));
+            DoubleVector.fromArray(DOUBLES, g, gFrom + i).mul(derivatives).intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            g[gFrom + i] *= y[yFrom + i] > 0 ? 1 : 0;
+        }
+    }
+
+    private static void ReLUChain(float[] y, int yFrom, float[] g, int gFrom, int length) {
+        FloatVector zero = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector derivatives = zero.blend(1f, FloatVector.fromArray(FLOATS, y, yFrom + i).compare(VectorOperators.GT, 0f));
+            FloatVector.fromArray(FLOATS, g, gFrom + i).mul(derivatives).intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            g[gFrom + i] *= y[yFrom + i] > 0 ? 1 : 0;
+        }
+    }
+
+    private static void SiLUChain(double[] z, int zFrom, double[] y, int yFrom, double[] g, int gFrom, int length) {
+        DoubleVector one = DoubleVector.broadcast(DOUBLES, 1.0);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector linear = DoubleVector.fromArray(DOUBLES, z, zFrom + i);
+            DoubleVector sigmoid = DoubleVector.fromArray(DOUBLES, y, yFrom + i).div(linear)
+                    .blend(0.5, linear.compare(VectorOperators.EQ, 0.0));
+            DoubleVector derivatives = sigmoid.mul(one.add(linear.mul(one.sub(sigmoid))));
+            DoubleVector.fromArray(DOUBLES, g, gFrom + i).mul(derivatives).intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            double sigmoid = z[zFrom + i] != 0 ? y[yFrom + i] / z[zFrom + i] : 0.5;
+            g[gFrom + i] *= sigmoid * (1 + z[zFrom + i] * (1 - sigmoid));
+        }
+    }
+
+    private static void SiLUChain(float[] z, int zFrom, float[] y, int yFrom, float[] g, int gFrom, int length) {
+        FloatVector one = FloatVector.broadcast(FLOATS, 1f);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector linear = FloatVector.fromArray(FLOATS, z, zFrom + i);
+            FloatVector sigmoid = FloatVector.fromArray(FLOATS, y, yFrom + i).div(linear)
+                    .blend(0.5f, linear.compare(VectorOperators.EQ, 0f));
+            FloatVector derivatives = sigmoid.mul(one.add(linear.mul(one.sub(sigmoid))));
+            FloatVector.fromArray(FLOATS, g, gFrom + i).mul(derivatives).intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            float sigmoid = z[zFrom + i] != 0 ? y[yFrom + i] / z[zFrom + i] : 0.5f;
+            g[gFrom + i] *= sigmoid * (1 + z[zFrom + i] * (1 - sigmoid));
+        }
+    }
+
+    private static void ScaledDifference(double[] a, int aFrom, double[] b, int bFrom, double[] result, int resultFrom,
+                                         int length, double factor) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, aFrom + i).sub(DoubleVector.fromArray(DOUBLES, b, bFrom + i))
+                    .mul(factor).intoArray(result, resultFrom + i);
+        }
+        for (; i < length; i++) {
+            result[resultFrom + i] = (a[aFrom + i] - b[bFrom + i]) * factor;
+        }
+    }
+
+    private static void ScaledDifference(float[] a, int aFrom, float[] b, int bFrom, float[] result, int resultFrom,
+                                         int length, float factor) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, a, aFrom + i).sub(FloatVector.fromArray(FLOATS, b, bFrom + i))
+                    .mul(factor).intoArray(result, resultFrom + i);
+        }
+        for (; i < length; i++) {
+            result[resultFrom + i] = (a[aFrom + i] - b[bFrom + i]) * factor;
+        }
+    }
+
+    private static double CrossEntropy(double[] o, int oFrom, double[] e, int eFrom, int length, double epsilon) {
+        DoubleVector sums = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector logs = DoubleVector.fromArray(DOUBLES, o, oFrom + i).add(epsilon).lanewise(VectorOperators.LOG);
+            sums = sums.sub(DoubleVector.fromArray(DOUBLES, e, eFrom + i).mul(logs));
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += -e[eFrom + i] * Math.log(o[oFrom + i] + epsilon);
+        }
+        return sum;
+    }
+
+    // Float lanes are summed into a double after each vector, so long reductions keep their precision.
+    private static double CrossEntropy(float[] o, int oFrom, float[] e, int eFrom, int length, float epsilon) {
+        double sum = 0;
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector logs = FloatVector.fromArray(FLOATS, o, oFrom + i).add(epsilon).lanewise(VectorOperators.LOG);
+            sum -= FloatVector.fromArray(FLOATS, e, eFrom + i).mul(logs).reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            sum += -e[eFrom + i] * Math.log(o[oFrom + i] + epsilon);
+        }
+        return sum;
+    }
+
+    private static double SquaredError(double[] o, int oFrom, double[] e, int eFrom, int length) {
+        DoubleVector sums = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(DOUBLES, o, oFrom + i).sub(DoubleVector.fromArray(DOUBLES, e, eFrom + i));
+            sums = sums.add(diff.mul(diff));
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double diff = o[oFrom + i] - e[eFrom + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private static double SquaredError(float[] o, int oFrom, float[] e, int eFrom, int length) {
+        double sum = 0;
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector diff = FloatVector.fromArray(FLOATS, o, oFrom + i).sub(FloatVector.fromArray(FLOATS, e, eFrom + i));
+            sum += diff.mul(diff).reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            double diff = o[oFrom + i] - e[eFrom + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private static void GradientStep(double[] p, int pFrom, double[] g, int gFrom, int length,
+                                     double learningRate, int datasetSize) {
+        DoubleVector zero = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector step = DoubleVector.fromArray(DOUBLES, g, gFrom + i).mul(learningRate).div(datasetSize);
+            DoubleVector.fromArray(DOUBLES, p, pFrom + i).sub(step).intoArray(p, pFrom + i);
+            zero.intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            p[pFrom + i] -= learningRate * g[gFrom + i] / datasetSize;
+            g[gFrom + i] = 0;
+        }
+    }
+
+    private static void GradientStep(float[] p, int pFrom, float[] g, int gFrom, int length, float scale) {
+        FloatVector zero = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector step = FloatVector.fromArray(FLOATS, g, gFrom + i).mul(scale);
+            FloatVector.fromArray(FLOATS, p, pFrom + i).sub(step).intoArray(p, pFrom + i);
+            zero.intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            p[pFrom + i] -= scale * g[gFrom + i];
+            g[gFrom + i] = 0;
+        }
+    }
+
+    private static void MomentumStep(double[] p, int pFrom, double[] g, int gFrom, double[] v, int vFrom, int length,
+                                     double learningRate, double inverseSize, double momentum) {
+        DoubleVector zero = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector gradient = DoubleVector.fromArray(DOUBLES, g, gFrom + i).mul(inverseSize);
+            DoubleVector velocity = DoubleVector.fromArray(DOUBLES, v, vFrom + i).mul(momentum).add(gradient);
+            velocity.intoArray(v, vFrom + i);
+            DoubleVector.fromArray(DOUBLES, p, pFrom + i).sub(velocity.mul(learningRate)).intoArray(p, pFrom + i);
+            zero.intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            v[vFrom + i] = momentum * v[vFrom + i] + g[gFrom + i] * inverseSize;
+            p[pFrom + i] -= learningRate * v[vFrom + i];
+            g[gFrom + i] = 0;
+        }
+    }
+
+    private static void MomentumStep(float[] p, int pFrom, float[] g, int gFrom, float[] v, int vFrom, int length,
+                                     float learningRate, float inverseSize, float momentum) {
+        FloatVector zero = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector gradient = FloatVector.fromArray(FLOATS, g, gFrom + i).mul(inverseSize);
+            FloatVector velocity = FloatVector.fromArray(FLOATS, v, vFrom + i).mul(momentum).add(gradient);
+            velocity.intoArray(v, vFrom + i);
+            FloatVector.fromArray(FLOATS, p, pFrom + i).sub(velocity.mul(learningRate)).intoArray(p, pFrom + i);
+            zero.intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            v[vFrom + i] = momentum * v[vFrom + i] + g[gFrom + i] * inverseSize;
+            p[pFrom + i] -= learningRate * v[vFrom + i];
+            g[gFrom + i] = 0;
+        }
+    }
+
+    private static void RMSPropStep(double[] p, int pFrom, double[] g, int gFrom, double[] s, int sFrom, int length,
+                                    double learningRate, double inverseSize, double decay, double epsilon) {
+        DoubleVector zero = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector gradient = DoubleVector.fromArray(DOUBLES, g, gFrom + i).mul(inverseSize);
+            DoubleVector meanSquare = DoubleVector.fromArray(DOUBLES, s, sFrom + i).mul(decay)
+                    .add(gradient.mul(gradient).mul(1 - decay));
+            meanSquare.intoArray(s, sFrom + i);
+            DoubleVector step = gradient.mul(learningRate).div(meanSquare.sqrt().add(epsilon));
+            DoubleVector.fromArray(DOUBLES, p, pFrom + i).sub(step).intoArray(p, pFrom + i);
+            zero.intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            double gradient = g[gFrom + i] * inverseSize;
+            s[sFrom + i] = decay * s[sFrom + i] + (1 - decay) * (gradient * gradient);
+            p[pFrom + i] -= learningRate * gradient / (Math.sqrt(s[sFrom + i]) + epsilon);
+            g[gFrom + i] = 0;
+        }
+    }
+
+    private static void RMSPropStep(float[] p, int pFrom, float[] g, int gFrom, float[] s, int sFrom, int length,
+                                    float learningRate, float inverseSize, float decay, float epsilon) {
+        FloatVector zero = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector gradient = FloatVector.fromArray(FLOATS, g, gFrom + i).mul(inverseSize);
+            FloatVector meanSquare = FloatVector.fromArray(FLOATS, s, sFrom + i).mul(decay)
+                    .add(gradient.mul(gradient).mul(1 - decay));
+            meanSquare.intoArray(s, sFrom + i);
+            FloatVector step = gradient.mul(learningRate).div(meanSquare.sqrt().add(epsilon));
+            FloatVector.fromArray(FLOATS, p, pFrom + i).sub(step).intoArray(p, pFrom + i);
+            zero.intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            float gradient = g[gFrom + i] * inverseSize;
+            s[sFrom + i] = decay * s[sFrom + i] + (1 - decay) * (gradient * gradient);
+            p[pFrom + i] -= learningRate * gradient / ((float) Math.sqrt(s[sFrom + i]) + epsilon);
+            g[gFrom + i] = 0;
+        }
+    }
+
+    // m and v are the first and second moments, which share their offsets.
+    private static void AdamStep(double[] p, int pFrom, double[] g, int gFrom, double[] m, double[] v, int mFrom,
+                                 int length, double stepSize, double inverseSize, double beta1, double beta2,
+                                 double epsilon) {
+        DoubleVector zero = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector gradient = DoubleVector.fromArray(DOUBLES, g, gFrom + i).mul(inverseSize);
+            DoubleVector moment = DoubleVector.fromArray(DOUBLES, m, mFrom + i).mul(beta1)
+                    .add(gradient.mul(1 - beta1));
+            DoubleVector square = DoubleVector.fromArray(DOUBLES, v, mFrom + i).mul(beta2)
+                    .add(gradient.mul(gradient).mul(1 - beta2));
+            moment.intoArray(m, mFrom + i);
+            square.intoArray(v, mFrom + i);
+            DoubleVector step = moment.mul(stepSize).div(square.sqrt().add(epsilon));
+            DoubleVector.fromArray(DOUBLES, p, pFrom + i).sub(step).intoArray(p, pFrom + i);
+            zero.intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            double gradient = g[gFrom + i] * inverseSize;
+            m[mFrom + i] = beta1 * m[mFrom + i] + (1 - beta1) * gradient;
+            v[mFrom + i] = beta2 * v[mFrom + i] + (1 - beta2) * (gradient * gradient);
+            p[pFrom + i] -= stepSize * m[mFrom + i] / (Math.sqrt(v[mFrom + i]) + epsilon);
+            g[gFrom + i] = 0;
+        }
+    }
+
+    private static void AdamStep(float[] p, int pFrom, float[] g, int gFrom, float[] m, float[] v, int mFrom,
+                                 int length, float stepSize, float inverseSize, float beta1, float beta2,
+                                 float epsilon) {
+        FloatVector zero = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector gradient = FloatVector.fromArray(FLOATS, g, gFrom + i).mul(inverseSize);
+            FloatVector moment = FloatVector.fromArray(FLOATS, m, mFrom + i).mul(beta1)
+                    .add(gradient.mul(1 - beta1));
+            FloatVector square = FloatVector.fromArray(FLOATS, v, mFrom + i).mul(beta2)
+                    .add(gradient.mul(gradient).mul(1 - beta2));
+            moment.intoArray(m, mFrom + i);
+            square.intoArray(v, mFrom + i);
+            FloatVector step = moment.mul(stepSize).div(square.sqrt().add(epsilon));
+            FloatVector.fromArray(FLOATS, p, pFrom + i).sub(step).intoArray(p, pFrom + i);
+            zero.intoArray(g, gFrom + i);
+        }
+        for (; i < length; i++) {
+            float gradient = g[gFrom + i] * inverseSize;
+            m[mFrom + i] = beta1 * m[mFrom + i] + (1 - beta1) * gradient;
+            v[mFrom + i] = beta2 * v[mFrom + i] + (1 - beta2) * (gradient * gradient);
+            p[pFrom + i] -= stepSize * m[mFrom + i] / ((float) Math.sqrt(v[mFrom + i]) + epsilon);
+            g[gFrom + i] = 0;
+        }
+    }
+
+    // Dot products of one row of a with count (at most 4) consecutive rows of b, stored in consecutive elements.
+    private static void DotProducts(double[] a, int aFrom, double[] b, int bFrom, int bStride, int length, int count,
+                                    double[] c, int cFrom, double[] bias, int biasFrom) {
+        int b1 = bFrom + Math.min(1, count - 1) * bStride;
+        int b2 = bFrom + Math.min(2, count - 1) * bStride;
+        int b3 = bFrom + Math.min(3, count - 1) * bStride;
+        DoubleVector sums0 = DoubleVector.zero(DOUBLES);
+        DoubleVector sums1 = DoubleVector.zero(DOUBLES);
+        DoubleVector sums2 = DoubleVector.zero(DOUBLES);
+        DoubleVector sums3 = DoubleVector.zero(DOUBLES);
+        int p = 0;
+        for (int bound = DOUBLES.loopBound(length); p < bound; p += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, a, aFrom + p);
+            sums0 = x.fma(DoubleVector.fromArray(DOUBLES, b, bFrom + p), sums0);
+            sums1 = x.fma(DoubleVector.fromArray(DOUBLES, b, b1 + p), sums1);
+            sums2 = x.fma(DoubleVector.fromArray(DOUBLES, b, b2 + p), sums2);
+            sums3 = x.fma(DoubleVector.fromArray(DOUBLES, b, b3 + p), sums3);
+        }
+        double[] sums = {
+                sums0.reduceLanes(VectorOperators.ADD), sums1.reduceLanes(VectorOperators.ADD),
+                sums2.reduceLanes(VectorOperators.ADD), sums3.reduceLanes(VectorOperators.ADD)
+        };
+        int[] rows = {bFrom, b1, b2, b3};
+        for (int r = 0; r < count; r++) {
+            for (int q = p; q < length; q++) {
+                sums[r] += a[aFrom + q] * b[rows[r] + q];
+            }
+            c[cFrom + r] = bias == null ? sums[r] : sums[r] + bias[biasFrom + r];
+        }
+    }
+
+    private static void DotProducts(float[] a, int aFrom, float[] b, int bFrom, int bStride, int length, int count,
+                                    float[] c, int cFrom, float[] bias, int biasFrom) {
+        int b1 = bFrom + Math.min(1, count - 1) * bStride;
+        int b2 = bFrom + Math.min(2, count - 1) * bStride;
+        int b3 = bFrom + Math.min(3, count - 1) * bStride;
+        FloatVector sums0 = FloatVector.zero(FLOATS);
+        FloatVector sums1 = FloatVector.zero(FLOATS);
+        FloatVector sums2 = FloatVector.zero(FLOATS);
+        FloatVector sums3 = FloatVector.zero(FLOATS);
+        int p = 0;
+        for (int bound = FLOATS.loopBound(length); p < bound; p += FLOATS.length()) {
+            FloatVector x = FloatVector.fromArray(FLOATS, a, aFrom + p);
+            sums0 = x.fma(FloatVector.fromArray(FLOATS, b, bFrom + p), sums0);
+            sums1 = x.fma(FloatVector.fromArray(FLOATS, b, b1 + p), sums1);
+            sums2 = x.fma(FloatVector.fromArray(FLOATS, b, b2 + p), sums2);
+            sums3 = x.fma(FloatVector.fromArray(FLOATS, b, b3 + p), sums3);
+        }
+        float[] sums = {
+                sums0.reduceLanes(VectorOperators.ADD), sums1.reduceLanes(VectorOperators.ADD),
+                sums2.reduceLanes(VectorOperators.ADD), sums3.reduceLanes(VectorOperators.ADD)
+        };
+        int[] rows = {bFrom, b1, b2, b3};
+        for (int r = 0; r < count; r++) {
+            for (int q = p; q < length; q++) {
+                sums[r] += a[aFrom + q] * b[rows[r] + q];
+            }
+            c[cFrom + r] = bias == null ? sums[r] : sums[r] + bias[biasFrom + r];
+        }
+    }
+
+    private static void DotProducts(byte[] a, int aFrom, byte[] b, int bFrom, int bStride, int length, int count,
+                                    float aScale, float[] bScales, int bScalesFrom, float[] c, int cFrom,
+                                    float[] bias, int biasFrom) {
+        int b1 = bFrom + Math.min(1, count - 1) * bStride;
+        int b2 = bFrom + Math.min(2, count - 1) * bStride;
+        int b3 = bFrom + Math.min(3, count - 1) * bStride;
+        IntVector sums0 = IntVector.zero(INTS);
+        IntVector sums1 = IntVector.zero(INTS);
+        IntVector sums2 = IntVector.zero(INTS);
+        IntVector sums3 = IntVector.zero(INTS);
+        int p = 0;
+        for (int bound = BYTES.loopBound(length); p < bound; p += BYTES.length()) {
+            IntVector x = Widen(a, aFrom + p);
+            sums0 = x.mul(Widen(b, bFrom + p)).add(sums0);
+            sums1 = x.mul(Widen(b, b1 + p)).add(sums1);
+            sums2 = x.mul(Widen(b, b2 + p)).add(sums2);
+            sums3 = x.mul(Widen(b, b3 + p)).add(sums3);
+        }
+        int[] sums = {
+                sums0.reduceLanes(VectorOperators.ADD), sums1.reduceLanes(VectorOperators.ADD),
+                sums2.reduceLanes(VectorOperators.ADD), sums3.reduceLanes(VectorOperators.ADD)
+        };
+        int[] rows = {bFrom, b1, b2, b3};
+        for (int r = 0; r < count; r++) {
+            for (int q = p; q < length; q++) {
+                sums[r] += a[aFrom + q] * b[rows[r] + q];
+            }
+            float value = sums[r] * aScale * bScales[bScalesFrom + r];
+            c[cFrom + r] = bias == null ? value : value + bias[biasFrom + r];
+        }
+    }
+
+    private static IntVector Widen(byte[] data, int from) {
+        return (IntVector) ByteVector.fromArray(BYTES, data, from).convertShape(VectorOperators.B2I, INTS, 0);
+    }
+}
@@ -0,0 +1,47 @@
+package fr.simpleneuralnetwork.utils;
+
+/**
+ * Chooses between the SIMD kernels of {@link VectorKernels} and the scalar loops.
+ * <p>
+ * The SIMD kernels need the {@code jdk.incubator.vector} module to be resolved. They are used by default
+ * when it is, unless the JVM is started with {@code -Dsimpleneuralnetwork.vectorize=false}.
+ * {@link VectorKernels} is only loaded once this class has checked that the module is there.
+ */
+public final class Vectorization {
+
+    public static final String PROPERTY = "simpleneuralnetwork.vectorize";
+
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private static volatile boolean enabled = AVAILABLE && Boolean.parseBoolean(System.getProperty(PROPERTY, "true"));
+
+    private Vectorization() {
+    }
+
+    public static boolean IsAvailable() {
+        return AVAILABLE;
+    }
+
+    public static boolean IsEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        if (enabled && !AVAILABLE) {
+            throw new IllegalStateException("The jdk.incubator.vector module is not available, "
+                    + "run with --add-modules jdk.incubator.vector.");
+        }
+        Vectorization.enabled = enabled;
+    }
+
+    /**
+     * Whether the SIMD kernels should handle these tensors, which must share a precision.
+     */
+    public static boolean Applies(Tensor a, Tensor b) {
+        return enabled && a.getPrecision() == b.getPrecision();
+    }
+
+    public static boolean Applies(Tensor a, Tensor b, Tensor c) {
+        return enabled && a.getPrecision() == b.getPrecision() && a.getPrecision() == c.getPrecision();
+    }
+}
@@ -1,8 +1,10 @@
 module fr.simpleneuralnetwork {
     requires javafx.controls;
     requires javafx.fxml;
-    requires ejml.simple;
-    requires ejml.core;
+    requires jdk.httpserver;
+    requires jdk.incubator.vector;
+    requires jdk.jfr;
+    requires jdk.management;
 
     exports fr.simpleneuralnetwork.main;
     opens fr.simpleneuralnetwork.main to javafx.fxml;